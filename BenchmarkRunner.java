@@ -0,0 +1,489 @@
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line runner for cutAndSplice benchmarks. Every implementation is
+ * run on every input file and enzyme in one invocation, over three scaling
+ * series:
+ * <UL>
+ * <LI>S, the splicee doubles while the source stays the same,
+ * <LI>N, the source is the input doubled, so the breaks double with it,
+ * <LI>b, the source stays the same while more and more of its sites are
+ * kept, the others being broken by changing one base.
+ * </UL>
+ * Each run is timed over several trials after an untimed one, and the
+ * results of every trial are used so no work can be skipped. For every
+ * series the growth exponent k of time ~ x^k is fitted by least squares
+ * on log-log scale; a series whose exponent is above the limit is flagged,
+ * so a change from O(n) to O(n^2) shows up without reading the numbers.
+ * <P>
+ * Every run also records the bytes allocated per call, the collections
+ * and collection time during its trials, and the heap retained by its
+ * result. Results are written as CSV or JSON. In CSV every row has a kind, run or
+ * fit, and the columns that do not apply to it are empty.
+ */
+public class BenchmarkRunner {
+
+	private static final String USAGE = String.join("\n",
+		"usage: java BenchmarkRunner [options]",
+		"  --impl A,B,...      IDnaStrand classes (default: all)",
+		"  --file F,G,...      DNA or FASTA files (default: data/ecoli_small.txt)",
+		"  --enzyme E,F,...    enzymes (default: gaattc)",
+		"  --series S,N,b      series run (default: S,N,b)",
+		"  --splicee START:ROWS  splicee sizes, doubling (default: 10000:8)",
+		"  --source START:ROWS   copies of the file, doubling (default: 1:5)",
+		"  --breaks START:ROWS   sites kept, doubling (default: 16:6)",
+		"  --trials T          timed trials per run (default: 10)",
+		"  --format csv|json   output format (default: csv)",
+		"  --out FILE          output file (default: standard output)",
+		"  --limit X           flag series with exponent above X (default: 1.5)",
+		"  --strict            exit with status 1 if any series is flagged");
+
+	private String[] myImpls = {"StringStrand", "StringBuilderStrand", "LinkStrand",
+		"PackedStrand", "RopeStrand"};
+	private String[] myFiles = {"data/ecoli_small.txt"};
+	private String[] myEnzymes = {"gaattc"};
+	private String mySeries = "SNb";
+	private int[] mySplicee = {10000, 8};
+	private int[] mySource = {1, 5};
+	private int[] myBreaks = {16, 6};
+	private int myTrials = 10;
+	private String myFormat = "csv";
+	private String myOut;
+	private double myLimit = 1.5;
+	private boolean myStrict;
+
+	private final List<Run> myRuns = new ArrayList<>();
+	private final List<Fit> myFits = new ArrayList<>();
+
+	/**
+	 * One timed cutAndSplice.
+	 */
+	static class Run {
+		final String series, impl, file, enzyme;
+		final long n, splicee, breaks, recomb;
+		final double millis;
+		final long allocated, gcs, gcMillis, retained;
+
+		Run(String series, String impl, String file, String enzyme,
+				long n, long splicee, long breaks, long recomb, double millis,
+				long allocated, long gcs, long gcMillis, long retained) {
+			this.series = series;
+			this.impl = impl;
+			this.file = file;
+			this.enzyme = enzyme;
+			this.n = n;
+			this.splicee = splicee;
+			this.breaks = breaks;
+			this.recomb = recomb;
+			this.millis = millis;
+			this.allocated = allocated;
+			this.gcs = gcs;
+			this.gcMillis = gcMillis;
+			this.retained = retained;
+		}
+
+		/**
+		 * @return the value this run's series scales
+		 */
+		long x() {
+			return series.equals("S") ? splicee : series.equals("N") ? n : breaks;
+		}
+	}
+
+	/**
+	 * The growth exponent fitted to one series.
+	 */
+	static class Fit {
+		final String series, impl, file, enzyme;
+		final double exponent;
+		final boolean flagged;
+
+		Fit(String series, String impl, String file, String enzyme, double exponent, boolean flagged) {
+			this.series = series;
+			this.impl = impl;
+			this.file = file;
+			this.enzyme = enzyme;
+			this.exponent = exponent;
+			this.flagged = flagged;
+		}
+	}
+
+	/**
+	 * Parse command line arguments.
+	 * @param args are the options, see USAGE
+	 * @throws IllegalArgumentException if an option is unknown or malformed
+	 */
+	public BenchmarkRunner(String[] args) {
+		for (int k = 0; k < args.length; k++) {
+			String option = args[k];
+			if (option.equals("--strict")) {
+				myStrict = true;
+				continue;
+			}
+			if (k + 1 == args.length) {
+				throw new IllegalArgumentException("missing value for " + option);
+			}
+			String value = args[++k];
+			switch (option) {
+				case "--impl": myImpls = value.split(","); break;
+				case "--file": myFiles = value.split(","); break;
+				case "--enzyme": myEnzymes = value.split(","); break;
+				case "--series": mySeries = value.replace(",", ""); break;
+				case "--splicee": mySplicee = range(option, value); break;
+				case "--source": mySource = range(option, value); break;
+				case "--breaks": myBreaks = range(option, value); break;
+				case "--trials": myTrials = positive(option, value); break;
+				case "--format": myFormat = value; break;
+				case "--out": myOut = value; break;
+				case "--limit": myLimit = number(option, value); break;
+				default: throw new IllegalArgumentException("unknown option " + option);
+			}
+		}
+		if (!myFormat.equals("csv") && !myFormat.equals("json")) {
+			throw new IllegalArgumentException("unknown format " + myFormat);
+		}
+		if (!mySeries.matches("[SNb]+")) {
+			throw new IllegalArgumentException("unknown series " + mySeries);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner;
+		try {
+			runner = new BenchmarkRunner(args);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		boolean flagged = runner.run();
+		if (flagged && runner.myStrict) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Run every series for every file, enzyme and implementation, then
+	 * write the results.
+	 * @return true if any series was flagged
+	 * @throws Exception if a file cannot be read or a class cannot be used
+	 * to create an IDnaStrand
+	 */
+	public boolean run() throws Exception {
+		for (String file : myFiles) {
+			String dna = GenomeLoader.load(Paths.get(file), new StringBuilderStrand()).toString();
+			for (String enzyme : myEnzymes) {
+				for (String impl : myImpls) {
+					if (mySeries.contains("S")) {
+						spliceeSeries(impl, file, enzyme, dna);
+					}
+					if (mySeries.contains("N")) {
+						sourceSeries(impl, file, enzyme, dna);
+					}
+					if (mySeries.contains("b")) {
+						breaksSeries(impl, file, enzyme, dna);
+					}
+				}
+			}
+		}
+		if (myOut == null) {
+			write(System.out);
+		}
+		else {
+			try (PrintStream out = new PrintStream(myOut)) {
+				write(out);
+			}
+		}
+		boolean flagged = false;
+		for (Fit fit : myFits) {
+			if (fit.flagged) {
+				System.err.printf("flagged: %s on %s, %s, series %s grows as x^%.2f\n",
+					fit.impl, fit.file, fit.enzyme, fit.series, fit.exponent);
+				flagged = true;
+			}
+		}
+		return flagged;
+	}
+
+	private void spliceeSeries(String impl, String file, String enzyme, String dna) throws Exception {
+		int from = myRuns.size();
+		for (long size : sizes(mySplicee)) {
+			myRuns.add(measure("S", impl, file, enzyme, dna, repeat(dna, size)));
+		}
+		fit(from);
+	}
+
+	private void sourceSeries(String impl, String file, String enzyme, String dna) throws Exception {
+		int from = myRuns.size();
+		String splicee = repeat(dna, mySplicee[0]);
+		for (long copies : sizes(mySource)) {
+			myRuns.add(measure("N", impl, file, enzyme, repeat(dna, copies * dna.length()), splicee));
+		}
+		fit(from);
+	}
+
+	private void breaksSeries(String impl, String file, String enzyme, String dna) throws Exception {
+		int from = myRuns.size();
+		String splicee = repeat(dna, mySplicee[0]);
+		int[] sites = sites(dna, enzyme);
+		for (long count : sizes(myBreaks)) {
+			if (count > sites.length) {
+				break;
+			}
+			myRuns.add(measure("b", impl, file, enzyme, keepSites(dna, enzyme, sites, (int) count), splicee));
+		}
+		fit(from);
+	}
+
+	/**
+	 * Time cutAndSplice of source over myTrials trials, after one untimed
+	 * call whose result is reported. Also records the bytes allocated per
+	 * call and the collections during the trials, and the heap retained by
+	 * the result, as DNABenchmark does.
+	 */
+	private Run measure(String series, String impl, String file, String enzyme,
+			String source, String splicee) throws Exception {
+		IDnaStrand strand = (IDnaStrand) Class.forName(impl).getDeclaredConstructor().newInstance();
+		strand.initialize(source);
+		IDnaStrand recomb = strand.cutAndSplice(enzyme, splicee);
+		long size = recomb.size();
+		long retained = DNABenchmark.usedMemory();
+		recomb = null;
+		retained -= DNABenchmark.usedMemory();
+
+		long total = 0;
+		long gcs = DNABenchmark.gcCount();
+		long gcMillis = DNABenchmark.gcMillis();
+		long allocated = DNABenchmark.allocatedBytes();
+		long before = System.nanoTime();
+		for (int i = 0; i < myTrials; i++) {
+			total += strand.cutAndSplice(enzyme, splicee).size();
+		}
+		long elapsed = System.nanoTime() - before;
+		allocated = DNABenchmark.allocatedBytes() - allocated;
+		gcs = DNABenchmark.gcCount() - gcs;
+		gcMillis = DNABenchmark.gcMillis() - gcMillis;
+		if (total != size * myTrials) {
+			throw new IllegalStateException(impl + " gave different results for the same cutAndSplice");
+		}
+		Run run = new Run(series, impl, file, enzyme, source.length(), splicee.length(),
+			sites(source, enzyme).length, size, elapsed / (1E6 * myTrials),
+			allocated / myTrials, gcs, gcMillis, retained);
+		System.err.printf("%-4s%-20s%,14d%,12d%,10d%,16d%12.3f%,16d%6d%8d%,14d\n", series, impl,
+			run.n, run.splicee, run.breaks, run.recomb, run.millis, run.allocated, run.gcs,
+			run.gcMillis, run.retained);
+		return run;
+	}
+
+	/**
+	 * Fit the exponent of myRuns[from..] and add it to myFits.
+	 */
+	private void fit(int from) {
+		List<Run> runs = myRuns.subList(from, myRuns.size());
+		if (runs.isEmpty()) {
+			return;
+		}
+		double[] x = new double[runs.size()];
+		double[] y = new double[runs.size()];
+		for (int k = 0; k < runs.size(); k++) {
+			x[k] = runs.get(k).x();
+			y[k] = runs.get(k).millis;
+		}
+		double exponent = exponent(x, y);
+		Run first = runs.get(0);
+		myFits.add(new Fit(first.series, first.impl, first.file, first.enzyme, exponent,
+			exponent > myLimit));
+	}
+
+	/**
+	 * Least squares slope of log y against log x, over the points where
+	 * both are positive.
+	 * @return the slope, or NaN if fewer than two distinct x are usable
+	 */
+	static double exponent(double[] x, double[] y) {
+		double sx = 0, sy = 0, sxx = 0, sxy = 0;
+		int n = 0;
+		for (int k = 0; k < x.length; k++) {
+			if (x[k] > 0 && y[k] > 0) {
+				double lx = Math.log(x[k]);
+				double ly = Math.log(y[k]);
+				sx += lx;
+				sy += ly;
+				sxx += lx * lx;
+				sxy += lx * ly;
+				n++;
+			}
+		}
+		double denominator = n * sxx - sx * sx;
+		if (n < 2 || denominator <= 1E-12) {
+			return Double.NaN;
+		}
+		return (n * sxy - sx * sy) / denominator;
+	}
+
+	/**
+	 * @return start, 2*start, 4*start, ... rows values in all
+	 */
+	private static long[] sizes(int[] range) {
+		long[] sizes = new long[range[1]];
+		for (int k = 0; k < sizes.length; k++) {
+			sizes[k] = (long) range[0] << k;
+		}
+		return sizes;
+	}
+
+	/**
+	 * @return dna repeated, and cut, to exactly length characters
+	 */
+	private static String repeat(String dna, long length) {
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too long for a String: " + length);
+		}
+		StringBuilder sb = new StringBuilder((int) length);
+		while (sb.length() < length) {
+			sb.append(dna, 0, (int) Math.min(dna.length(), length - sb.length()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the starts of the left-to-right, non-overlapping sites of
+	 * enzyme in dna, the ones cutAndSplice cuts
+	 */
+	static int[] sites(String dna, String enzyme) {
+		EnzymeMatcher matcher = new EnzymeMatcher(enzyme);
+		int[] sites = new int[16];
+		int count = 0;
+		int state = 0;
+		for (int k = 0; k < dna.length(); k++) {
+			state = matcher.next(state, dna.charAt(k));
+			if (state == matcher.length()) {
+				if (count == sites.length) {
+					sites = Arrays.copyOf(sites, 2 * count);
+				}
+				sites[count++] = k + 1 - state;
+				state = 0;
+			}
+		}
+		return Arrays.copyOf(sites, count);
+	}
+
+	/**
+	 * Keep count of the sites, spread evenly, and break the others by
+	 * changing their first base. A change can, rarely, make a new site, so
+	 * measure() counts the sites again.
+	 */
+	private static String keepSites(String dna, String enzyme, int[] sites, int count) {
+		char[] chars = dna.toCharArray();
+		char first = enzyme.charAt(0);
+		char other = first == 'a' ? 'c' : 'a';
+		int kept = 0;
+		for (int k = 0; k < sites.length; k++) {
+			if (kept < count && (long) kept * sites.length <= (long) k * count) {
+				kept++;
+			}
+			else {
+				chars[sites[k]] = other;
+			}
+		}
+		return new String(chars);
+	}
+
+	private void write(PrintStream out) {
+		if (myFormat.equals("json")) {
+			writeJson(out);
+		}
+		else {
+			writeCsv(out);
+		}
+	}
+
+	private void writeCsv(PrintStream out) {
+		out.println("kind,series,impl,file,enzyme,N,S,breaks,recomb,ms,alloc,gcs,gcms,retained,"
+			+ "exponent,flagged");
+		for (Run run : myRuns) {
+			out.printf(Locale.ROOT, "run,%s,%s,%s,%s,%d,%d,%d,%d,%.4f,%d,%d,%d,%d,,\n", run.series, run.impl,
+				csv(run.file), run.enzyme, run.n, run.splicee, run.breaks, run.recomb, run.millis,
+				run.allocated, run.gcs, run.gcMillis, run.retained);
+		}
+		for (Fit fit : myFits) {
+			out.printf(Locale.ROOT, "fit,%s,%s,%s,%s,,,,,,,,,,%.4f,%b\n", fit.series, fit.impl, csv(fit.file),
+				fit.enzyme, fit.exponent, fit.flagged);
+		}
+	}
+
+	private void writeJson(PrintStream out) {
+		out.println("{");
+		out.println("  \"runs\": [");
+		for (int k = 0; k < myRuns.size(); k++) {
+			Run run = myRuns.get(k);
+			out.printf(Locale.ROOT, "    {\"series\": %s, \"impl\": %s, \"file\": %s, \"enzyme\": %s, \"N\": %d, "
+				+ "\"S\": %d, \"breaks\": %d, \"recomb\": %d, \"ms\": %.4f, \"alloc\": %d, "
+				+ "\"gcs\": %d, \"gcms\": %d, \"retained\": %d}%s\n",
+				json(run.series), json(run.impl), json(run.file), json(run.enzyme), run.n,
+				run.splicee, run.breaks, run.recomb, run.millis, run.allocated, run.gcs,
+				run.gcMillis, run.retained, k + 1 < myRuns.size() ? "," : "");
+		}
+		out.println("  ],");
+		out.println("  \"fits\": [");
+		for (int k = 0; k < myFits.size(); k++) {
+			Fit fit = myFits.get(k);
+			out.printf(Locale.ROOT, "    {\"series\": %s, \"impl\": %s, \"file\": %s, \"enzyme\": %s, "
+				+ "\"exponent\": %s, \"flagged\": %b}%s\n",
+				json(fit.series), json(fit.impl), json(fit.file), json(fit.enzyme),
+				Double.isNaN(fit.exponent) ? "null" : String.format(Locale.ROOT, "%.4f", fit.exponent),
+				fit.flagged, k + 1 < myFits.size() ? "," : "");
+		}
+		out.println("  ]");
+		out.println("}");
+	}
+
+	private static String csv(String s) {
+		if (s.contains(",") || s.contains("\"")) {
+			return "\"" + s.replace("\"", "\"\"") + "\"";
+		}
+		return s;
+	}
+
+	private static String json(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static int[] range(String option, String value) {
+		String[] parts = value.split(":");
+		if (parts.length != 2) {
+			throw new IllegalArgumentException(option + " needs START:ROWS, not " + value);
+		}
+		return new int[] {positive(option, parts[0]), positive(option, parts[1])};
+	}
+
+	private static double number(String option, String value) {
+		try {
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(option + " needs a number, not " + value);
+		}
+	}
+
+	private static int positive(String option, String value) {
+		int n;
+		try {
+			n = Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException(option + " needs a number, not " + value);
+		}
+		if (n <= 0) {
+			throw new IllegalArgumentException(option + " must be positive, not " + value);
+		}
+		return n;
+	}
+}
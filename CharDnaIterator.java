@@ -6,14 +6,15 @@ import java.util.Iterator;
  * method, so performance will be "good" if sequential
  * access via consecutive indexes results in O(n)
  * performance for n calls of .charAt with indexes
- * in order
+ * in order. The index is a long, so strands longer than
+ * Integer.MAX_VALUE bases can be iterated.
  * @author ola 
  *
  */
 public class CharDnaIterator implements Iterator<Character> {
 	
 	private IDnaStrand myStrand;
-	private int myIndex;
+	private long myIndex;
 	
 	/**
 	 * Construct an iterator from a specified strand.
@@ -0,0 +1,194 @@
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Builds one strand from fragments appended by many threads at once, as
+ * when reads are assembled in parallel. A producer reserves a sequence
+ * number, or a block of them, with one atomic add, and fills its slots
+ * whenever it likes; the fragments end up in sequence number order no
+ * matter which thread filled them or when. Nothing is locked: a slot is
+ * filled with a compare-and-set, and the slot storage grows by installing
+ * new segments with a compare-and-set, never by copying.
+ * <P>
+ * seal() links every fragment, in order, as a node of a LinkStrand with
+ * no copy, so getAppendCount() of the result is the number of fragments.
+ * Call it once every producer is done. It first checks that every slot
+ * reserved is filled, and only then marks the builder sealed, with one
+ * compare-and-set on the reservation counter that fails if anything was
+ * reserved meanwhile, so a builder is either sealed with every fragment
+ * in it or left open as if seal had not been called. A sealed builder
+ * takes no more reservations.
+ * <P>
+ * append reserves one slot per call, so with many producers the shared
+ * counter is the one contended memory location. Producers that reserve a
+ * block with reserve(count) and fill it touch the counter once per block,
+ * and fill slots no other producer writes next to.
+ */
+public class ConcurrentStrandBuilder {
+
+	/** The most fragments one builder holds. */
+	public static final long MAX_FRAGMENTS = Integer.MAX_VALUE - (1L << 10);
+
+	// segment k holds FIRST_SLOTS << k slots, so slot s is in the segment
+	// of the highest bit of s + FIRST_SLOTS, and SEGMENTS of them hold
+	// MAX_FRAGMENTS slots
+	private static final int FIRST_SHIFT = 10;
+	private static final long FIRST_SLOTS = 1L << FIRST_SHIFT;
+	private static final int SEGMENTS = 31 - FIRST_SHIFT;
+
+	// set in myNext once sealed; reservations refused after that, or
+	// because the builder is full, add to the bits below it and take their
+	// count back
+	private static final long SEALED = 1L << 62;
+
+	private final AtomicLong myNext = new AtomicLong();
+	private volatile long mySealedCount = -1;	// slots sealed, set just after SEALED
+	private final AtomicReferenceArray<AtomicReferenceArray<String>> mySegments =
+		new AtomicReferenceArray<>(SEGMENTS);
+
+	/**
+	 * Reserve the next sequence number.
+	 * @return the sequence number to fill with put
+	 * @throws IllegalStateException if the builder is sealed or full
+	 */
+	public long reserve() {
+		return reserve(1);
+	}
+
+	/**
+	 * Reserve count consecutive sequence numbers with one atomic add.
+	 * @param count is the number of slots reserved
+	 * @return the first of the sequence numbers to fill with put
+	 * @throws IllegalArgumentException if count is negative
+	 * @throws IllegalStateException if the builder is sealed or full
+	 */
+	public long reserve(int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("negative count " + count);
+		}
+		long first = myNext.getAndAdd(count);
+		if ((first & SEALED) != 0) {
+			myNext.getAndAdd(-count);
+			throw new IllegalStateException("builder is sealed");
+		}
+		if (first + count > MAX_FRAGMENTS) {
+			myNext.getAndAdd(-count);
+			throw new IllegalStateException("builder is full");
+		}
+		return first;
+	}
+
+	/**
+	 * Fill a reserved slot.
+	 * @param seq is the sequence number reserved for fragment
+	 * @param fragment is the dna stored there, it is never copied
+	 * @throws IndexOutOfBoundsException if seq has not been reserved
+	 * @throws IllegalStateException if slot seq is already filled, as
+	 *         every slot is once the builder is sealed
+	 */
+	public void put(long seq, String fragment) {
+		Objects.requireNonNull(fragment);
+		if (seq < 0 || seq >= reserved()) {
+			throw new IndexOutOfBoundsException("slot " + seq + " not reserved");
+		}
+		fill(seq, fragment);
+	}
+
+	/**
+	 * Reserve the next sequence number and fill it with fragment.
+	 * @param fragment is the dna stored, it is never copied
+	 * @return the sequence number of fragment
+	 * @throws IllegalStateException if the builder is sealed or full
+	 */
+	public long append(String fragment) {
+		Objects.requireNonNull(fragment);
+		long seq = reserve(1);
+		fill(seq, fragment);
+		return seq;
+	}
+
+	/**
+	 * @return the number of sequence numbers reserved so far
+	 */
+	public long reserved() {
+		long next = myNext.get();
+		if ((next & SEALED) != 0) {
+			// only the seal that won the compare-and-set sets the count,
+			// right after it, so this waits for at most that one store
+			long count;
+			while ((count = mySealedCount) < 0) {
+				Thread.onSpinWait();
+			}
+			return count;
+		}
+		return Math.min(next, MAX_FRAGMENTS);
+	}
+
+	/**
+	 * Link every fragment, in sequence number order, into a LinkStrand.
+	 * The slots are checked first; the builder is sealed only if they are
+	 * all filled and nothing has been reserved since, and checked again
+	 * if something has.
+	 * @return the strand of all the fragments
+	 * @throws IllegalStateException if a reserved slot is empty, the
+	 *         builder is left open then, or if it is already sealed
+	 */
+	public LinkStrand seal() {
+		long checked = 0;
+		while (true) {
+			long next = myNext.get();
+			if ((next & SEALED) != 0) {
+				throw new IllegalStateException("builder is sealed");
+			}
+			long count = Math.min(next, MAX_FRAGMENTS);
+			for (; checked < count; checked++) {
+				if (fragment(checked) == null) {
+					throw new IllegalStateException("slot " + checked + " reserved but not filled");
+				}
+			}
+			if (myNext.compareAndSet(next, next | SEALED)) {
+				mySealedCount = count;
+				break;
+			}
+		}
+		LinkStrand ret = new LinkStrand();
+		for (long seq = 0; seq < checked; seq++) {
+			ret.appendLinked(fragment(seq));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the fragment in slot seq, null if it is empty
+	 */
+	private String fragment(long seq) {
+		long slot = seq + FIRST_SLOTS;
+		int k = 63 - Long.numberOfLeadingZeros(slot) - FIRST_SHIFT;
+		AtomicReferenceArray<String> slots = mySegments.get(k);
+		return slots == null ? null : slots.get((int) (slot - Long.highestOneBit(slot)));
+	}
+
+	/**
+	 * Store fragment in slot seq, which has been reserved.
+	 */
+	private void fill(long seq, String fragment) {
+		long slot = seq + FIRST_SLOTS;
+		int k = 63 - Long.numberOfLeadingZeros(slot) - FIRST_SHIFT;
+		if (!segment(k).compareAndSet((int) (slot - Long.highestOneBit(slot)), null, fragment)) {
+			throw new IllegalStateException("slot " + seq + " already filled");
+		}
+	}
+
+	/**
+	 * @return segment k, installed by whichever thread gets there first
+	 */
+	private AtomicReferenceArray<String> segment(int k) {
+		AtomicReferenceArray<String> slots = mySegments.get(k);
+		if (slots == null) {
+			mySegments.compareAndSet(k, null, new AtomicReferenceArray<>((int) (FIRST_SLOTS << k)));
+			slots = mySegments.get(k);
+		}
+		return slots;
+	}
+}
@@ -1,5 +1,11 @@
 import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Code for benchmarking the time taken to simulate cutting
@@ -7,6 +13,8 @@ import java.util.*;
  * intended to be used in reasoning about tradeoffs in using 
  * a linked list to represent a strand of DNA and to compare
  * this representation with a simple String representation.
+ * The settings below are fixed; BenchmarkRunner takes them from the
+ * command line and writes CSV or JSON instead.
  * @author Owen Astrachan
  * @author Brandon Fain
  */
@@ -17,6 +25,14 @@ public class DNABenchmark {
 	private static final String strandType = "StringStrand";
 	//private static final String strandType = "StringBuilderStrand";
 	//private static final String strandType = "LinkStrand";
+	//private static final String strandType = "PackedStrand";
+	//private static final String strandType = "RopeStrand";
+	//private static final String strandType = "OffHeapStrand";
+
+	// Select/uncomment which cut and splice engine you want to benchmark
+	private static final String engine = "matcher";	// IDnaStrand.cutAndSplice
+	//private static final String engine = "regex";	// String.split on toString()
+	//private static final String engine = "parallel";	// IDnaStrand.parallelCutAndSplice
 	
 	
 	// Benchmark parameters
@@ -25,6 +41,13 @@ public class DNABenchmark {
 	private static final int SPLICEE_ROWS = 8;			// rows of spliceeBenchmark data
 	private static final int SOURCE_ROWS = 5;			// rows of sourceBenchmark data
 	private static final int TRIALS = 10;				// number of trials per run
+	private static final String[] PANEL = {				// enzymes in digestBenchmark
+		"gaattc", "ggatcc", "aagctt", "gcggccgc", "ctgcag", "cccggg", "ctcgag",
+		"gtcgac", "ggtacc", "gagctc", "tctaga", "actagt", "ccatgg", "catatg",
+		"gatatc", "gggccc", "agatct", "atcgat", "acgcgt", "gctagc"};
+	private static final String[] STRAND_TYPES = {		// classes in footprint/reverse benchmarks
+		"StringStrand", "StringBuilderStrand", "LinkStrand", "PackedStrand", "RopeStrand",
+		"OffHeapStrand"};
 	
 	private static String mySource;
 
@@ -33,11 +56,289 @@ public class DNABenchmark {
 		// Can set the data file to benchmark here
 		String fileName = "data/ecoli_small.txt";
 		File file = new File(fileName);
-		mySource = dnaFromScanner(new Scanner(file));
+		mySource = GenomeLoader.load(file.toPath(), new StringBuilderStrand()).toString();
 
 		printHeader();
 		spliceeBenchmark();
 		sourceBenchmark();
+		offHeapBenchmark();
+		footprintBenchmark();
+		reverseComplementBenchmark();
+		parallelBenchmark();
+		digestBenchmark();
+		streamingBenchmark(file.toPath());
+	}
+
+	/**
+	 * Timing benchmark for StreamingSplicer, cutting the data file into a
+	 * temporary file with splicees of doubling size, as spliceeBenchmark
+	 * does in memory. Reports the recombinant size and the heap in use
+	 * afterwards, which stays flat however large the recombinant gets.
+	 * @param source is the data file
+	 * @throws Exception if a file cannot be read or written
+	 */
+	public static void streamingBenchmark(Path source) throws Exception {
+		Path target = Files.createTempFile("recombinant", ".txt");
+		try {
+			System.out.printf("%-10s%12s%16s%10s%10s%14s\n", "streaming", "splicee",
+				"recomb", "time", "breaks", "heap");
+			String splicee = mySource.substring(0, DEFAULT_SPLICEE);
+			for (int j=0; j<SPLICEE_ROWS; j++) {
+				double before = System.nanoTime();
+				long breaks = StreamingSplicer.splice(source, target, ENZYME, splicee);
+				double after = System.nanoTime();
+				System.out.printf("%-10s%,12d%,16d%,10d%,10d%,14d\n", "", splicee.length(),
+					Files.size(target), (int) ((after-before) / 1E6), breaks, usedMemory());
+				splicee += splicee;
+			}
+		}
+		finally {
+			Files.delete(target);
+		}
+	}
+
+	/**
+	 * Timing benchmark for a restriction digest of mySource, held in a
+	 * strandType, with the first 1, 5, 10 and 20 enzymes of PANEL. Compares
+	 * one pass of IDnaStrand.digest with chaining one cutAndSplice per
+	 * enzyme. The recombinant lengths can differ: a chained call can cut a
+	 * site that an earlier splice created, a single pass cannot.
+	 * @throws Exception if strandType cannot be used to create an IDnaStrand
+	 */
+	public static void digestBenchmark() throws Exception {
+		String splicee = mySource.substring(0, 10);
+		IDnaStrand strand = (IDnaStrand) Class.forName(strandType).getDeclaredConstructor().newInstance();
+		strand.initialize(mySource);
+		System.out.printf("%-10s%14s%14s%12s%14s%12s\n", "enzymes", "dna,N",
+			"digest", "time(ms)", "chained", "time(ms)");
+		for (int count : new int[] {1, 5, 10, PANEL.length}) {
+			Map<String, String> enzymes = new LinkedHashMap<>();
+			for (int k = 0; k < count; k++) {
+				enzymes.put(PANEL[k], splicee);
+			}
+
+			double before = System.nanoTime();
+			IDnaStrand digest = null;
+			for (int i=0; i<TRIALS; i++) {
+				digest = strand.digest(enzymes);
+			}
+			double middle = System.nanoTime();
+			IDnaStrand chained = null;
+			for (int i=0; i<TRIALS; i++) {
+				chained = strand;
+				for (String enzyme : enzymes.keySet()) {
+					chained = chained.cutAndSplice(enzyme, splicee);
+				}
+			}
+			double after = System.nanoTime();
+
+			System.out.printf("%-10d%,14d%,14d%12.3f%,14d%12.3f\n", count, strand.size(),
+				digest.size(), (middle-before) / (1E6*TRIALS), chained.size(), (after-middle) / (1E6*TRIALS));
+		}
+	}
+
+	/**
+	 * Scaling benchmark for parallel streams over strandType holding
+	 * mySource. Times GC content and base counting with chars().parallel()
+	 * in pools of 1, 2, 4, ... threads up to the number of cores, and
+	 * reports the speedup over one thread.
+	 * @throws Exception if strandType cannot be used to create an IDnaStrand
+	 */
+	public static void parallelBenchmark() throws Exception {
+		IDnaStrand strand = (IDnaStrand) Class.forName(strandType).getDeclaredConstructor().newInstance();
+		strand.initialize(mySource);
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%-10s%12s%12s%10s\n", "threads", "gc(ms)", "counts(ms)", "speedup");
+		double single = 0;
+		for (int threads = 1; threads <= cores; threads = (threads == cores) ? cores + 1 : Math.min(cores, 2 * threads)) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			double before = System.nanoTime();
+			for (int i=0; i<TRIALS; i++) {
+				pool.submit(() -> gcContent(strand)).get();
+			}
+			double middle = System.nanoTime();
+			for (int i=0; i<TRIALS; i++) {
+				pool.submit(() -> baseCounts(strand)).get();
+			}
+			double after = System.nanoTime();
+			pool.shutdown();
+
+			if (threads == 1) {
+				single = after - before;
+			}
+			System.out.printf("%-10d%12.3f%12.3f%10.2f\n", threads, (middle-before) / (1E6*TRIALS),
+				(after-middle) / (1E6*TRIALS), single / (after-before));
+		}
+	}
+
+	/**
+	 * @param strand is the strand examined, with chars().parallel()
+	 * @return the fraction of bases in strand that are c or g
+	 */
+	public static double gcContent(IDnaStrand strand) {
+		long gc = strand.chars().parallel().filter(ch -> ch == 'c' || ch == 'g').count();
+		return (double) gc / strand.size();
+	}
+
+	/**
+	 * @param strand is the strand examined, with chars().parallel()
+	 * @return counts[ch] is the number of times ch occurs in strand
+	 */
+	public static long[] baseCounts(IDnaStrand strand) {
+		return strand.chars().parallel().collect(() -> new long[128],
+			(counts, ch) -> counts[ch & 127]++,
+			(a, b) -> {
+				for (int k = 0; k < a.length; k++) {
+					a[k] += b[k];
+				}
+			});
+	}
+
+	/**
+	 * Timing benchmark for reverseComplement on each class in STRAND_TYPES
+	 * holding mySource. Reports the average time of the call alone and of
+	 * the call followed by toString(), since some implementations return a
+	 * lazy view and only pay when the bases are read.
+	 * @throws Exception if a class cannot be used to create an IDnaStrand
+	 */
+	public static void reverseComplementBenchmark() throws Exception {
+		System.out.printf("%-20s%14s%12s%12s\n", "Class", "dna,N", "revcomp", "+toString");
+		for (String className : STRAND_TYPES) {
+			IDnaStrand strand = (IDnaStrand) Class.forName(className).getDeclaredConstructor().newInstance();
+			strand.initialize(mySource);
+
+			double before = System.nanoTime();
+			for (int i=0; i<TRIALS; i++) {
+				strand.reverseComplement();
+			}
+			double middle = System.nanoTime();
+			for (int i=0; i<TRIALS; i++) {
+				strand.reverseComplement().toString();
+			}
+			double after = System.nanoTime();
+
+			System.out.printf("%-20s%,14d%12.3f%12.3f\n", className, strand.size(),
+				(middle-before) / (1E6*TRIALS), (after-middle) / (1E6*TRIALS));
+		}
+	}
+
+	/**
+	 * Garbage collection during cutAndSplice with LinkStrand and with
+	 * OffHeapStrand, on the two largest sources of sourceBenchmark, which
+	 * must have run first. Reports the average time, the collections and
+	 * collection time over all TRIALS, and the heap held by the source and
+	 * the recombinant. Each OffHeapStrand recombinant is closed once used.
+	 * @throws Exception if a class cannot be used to create an IDnaStrand
+	 */
+	public static void offHeapBenchmark() throws Exception {
+		String splicee = mySource.substring(0, DEFAULT_SPLICEE);
+		System.out.printf("%-14s%14s%14s%10s%6s%8s%14s\n", "offheap", "source",
+			"recomb", "time", "gcs", "gc(ms)", "heap");
+		for (int j = 2; j >= 1; j--) {
+			String dna = mySource.substring(0, mySource.length() >> j);
+			for (String className : new String[] {"LinkStrand", "OffHeapStrand"}) {
+				IDnaStrand strand = (IDnaStrand) Class.forName(className).getDeclaredConstructor().newInstance();
+				strand.initialize(dna);
+				long gcs = gcCount();
+				long gcTime = gcMillis();
+				double before = System.nanoTime();
+				IDnaStrand recomb = strand.cutAndSplice(ENZYME, splicee);
+				for (int i=0; i<TRIALS-1; i++) {
+					close(recomb);
+					recomb = strand.cutAndSplice(ENZYME, splicee);
+				}
+				double after = System.nanoTime();
+				gcs = gcCount() - gcs;
+				gcTime = gcMillis() - gcTime;
+				long recLength = recomb.size();
+				// heap held by both strands: in use with them, minus in use without
+				long heap = usedMemory();
+				close(recomb);
+				close(strand);
+				recomb = null;
+				strand = null;
+				heap -= usedMemory();
+				System.out.printf("%-14s%,14d%,14d%,10d%,6d%,8d%,14d\n", className, dna.length(),
+					recLength, (int) ((after-before) / (1E6*TRIALS)), gcs, gcTime, heap);
+			}
+		}
+	}
+
+	private static void close(IDnaStrand strand) throws Exception {
+		if (strand instanceof AutoCloseable) {
+			((AutoCloseable) strand).close();
+		}
+	}
+
+	/**
+	 * Memory footprint of each class in STRAND_TYPES holding mySource,
+	 * reported as heap bytes per base. Each strand is initialized from a
+	 * fresh copy of mySource so no implementation can share its chars.
+	 * @throws Exception if a class cannot be used to create an IDnaStrand
+	 */
+	public static void footprintBenchmark() throws Exception {
+		System.out.printf("%-20s%14s%12s\n", "Class", "bytes", "bytes/base");
+		for (String className : STRAND_TYPES) {
+			long before = usedMemory();
+			IDnaStrand strand = (IDnaStrand) Class.forName(className).getDeclaredConstructor().newInstance();
+			strand.initialize(new String(mySource.toCharArray()));
+			long bytes = usedMemory() - before;
+			System.out.printf("%-20s%,14d%12.2f\n", className, bytes, (double) bytes / strand.size());
+		}
+	}
+
+	/**
+	 * Bytes allocated by the current thread so far. Allocation by other
+	 * threads, as in the parallel engine, is not counted.
+	 * @return the bytes, or 0 if the JVM cannot measure them
+	 */
+	public static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the number of collections so far, summed over all collectors
+	 */
+	public static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * @return the milliseconds spent collecting so far, summed over all
+	 * collectors
+	 */
+	public static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * @return heap in use after full collections, repeated until the heap
+	 * stops shrinking
+	 */
+	public static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int k = 0; k < 10; k++) {
+			System.gc();
+			long now = rt.totalMemory() - rt.freeMemory();
+			if (now >= used) {
+				return now;
+			}
+			used = now;
+		}
+		return used;
 	}
 
 	/**
@@ -96,30 +397,80 @@ public class DNABenchmark {
 			strand = (IDnaStrand) Class.forName(className).getDeclaredConstructor().newInstance();
 			strand.initialize(dna);
 
+			long gcs = gcCount();
+			long gcTime = gcMillis();
+			long allocated = allocatedBytes();
 			double before = System.nanoTime();
-			IDnaStrand recomb = strand.cutAndSplice(enzyme, splicee);
+			IDnaStrand recomb = cutAndSplice(strand, enzyme, splicee);
 			for (int i=0; i<TRIALS-1; i++) {
-				strand.cutAndSplice(enzyme, splicee);
+				cutAndSplice(strand, enzyme, splicee);
 			}
 			double after = System.nanoTime();
+			allocated = allocatedBytes() - allocated;
+			gcs = gcCount() - gcs;
+			gcTime = gcMillis() - gcTime;
 
 			long recLength = recomb.size();			
-			String ret = String.format("%s:%,12d%,12d%,14d%,10d%,10d", 
+			int breaks = (recomb.getAppendCount()-1)/2;
+			// heap retained by recomb: in use with it, minus in use without it
+			long retained = usedMemory();
+			recomb = null;
+			retained -= usedMemory();
+			String ret = String.format("%s:%,12d%,12d%,14d%,10d%,14d%,6d%,8d%,14d%,10d", 
 				className.substring(0,10), strand.size(), 
 				splicee.length(), recLength, (int) ((after-before) / (1E6*TRIALS)),
-				(recomb.getAppendCount()-1)/2);
+				allocated / TRIALS, gcs, gcTime, retained, breaks);
 			return ret;
 		} catch (ClassNotFoundException e) {
 			return "could not create class " + className;
 		}
 	}
 
-	
+
+	/**
+	 * Cut and splice strand with the engine selected above.
+	 * @param strand is the source strand, left unchanged
+	 * @param enzyme The string to cut/break strand at
+	 * @param splicee DNA to splice in at every occurrence of enzyme
+	 * @return the recombinant strand
+	 */
+	public static IDnaStrand cutAndSplice(IDnaStrand strand, String enzyme, String splicee) {
+		if (engine.equals("regex")) {
+			return regexCutAndSplice(strand, enzyme, splicee);
+		}
+		if (engine.equals("parallel")) {
+			return strand.parallelCutAndSplice(enzyme, splicee);
+		}
+		return strand.cutAndSplice(enzyme, splicee);
+	}
+
+	/**
+	 * The original cut and splice, kept for side-by-side timing: copies the
+	 * strand into a String and splits it with a regular expression.
+	 * @param strand is the source strand, left unchanged
+	 * @param enzyme The string to cut/break strand at
+	 * @param splicee DNA to splice in at every occurrence of enzyme
+	 * @return the recombinant strand
+	 */
+	public static IDnaStrand regexCutAndSplice(IDnaStrand strand, String enzyme, String splicee) {
+		String search = strand.toString();
+		IDnaStrand ret = strand.getInstance("");
+		String[] fragments = search.split(enzyme+"{1}", -1);
+		for (int i=0; i<fragments.length-1; i++) {
+			ret.append(fragments[i]);
+			ret.append(splicee);
+		}
+		ret.append(fragments[fragments.length-1]);
+		return ret;
+	}
 
 	/**
 	 * Return a string representing the DNA read from the scanner, ignoring any
 	 * characters can't be part of DNA and converting all characters to lower
-	 * case.
+	 * case. Files are loaded with GenomeLoader, which is much faster on large
+	 * inputs and skips FASTA headers, and FastaReader reads multi-record
+	 * FASTA into one strand per record; this is kept for other Scanner
+	 * sources.
 	 * @param s is the Scanner read from
 	 * @return a string representing the DNA read, characters in the returned
 	 *         string are restricted to 'c', 'g', 't', 'a'
@@ -144,12 +495,15 @@ public class DNABenchmark {
 	 */
 	public static void printHeader() {
 		System.out.printf("dna length = %,d\n", mySource.length());
-		System.out.println("cutting at enzyme " + ENZYME);
+		System.out.println("cutting at enzyme " + ENZYME + " with engine " + engine);
 		System.out.printf("------------------------------------");
-		System.out.printf("----------------------------------\n");
-		System.out.printf("Class%18s%12s%14s%10s%10s\n",
-			"dna,N", "splicee,S", "recomb", "time(ms)", "breaks,b");
+		System.out.printf("----------------------------------");
+		System.out.printf("------------------------------------------\n");
+		System.out.printf("Class%18s%12s%14s%10s%14s%6s%8s%14s%10s\n",
+			"dna,N", "splicee,S", "recomb", "time(ms)", "alloc/op", "gcs",
+			"gc(ms)", "retained", "breaks,b");
 			System.out.printf("------------------------------------");
-			System.out.printf("----------------------------------\n");
+			System.out.printf("----------------------------------");
+			System.out.printf("------------------------------------------\n");
 	}
 }
@@ -0,0 +1,176 @@
+import java.util.Arrays;
+
+/**
+ * Exact-match search engine for a single enzyme. The enzyme is compiled
+ * into a KMP automaton whose columns are only the distinct characters of
+ * the enzyme, so for DNA the table has at most four columns and every
+ * character of the strand costs one table lookup. Any character that does
+ * not occur in the enzyme sends the automaton back to the start state.
+ * <P>
+ * The automaton itself is immutable and can be shared; callers thread the
+ * state through <code>next</code>. A state equal to <code>length()</code>
+ * means an occurrence of the enzyme ends at the character just consumed.
+ * Continuing from that state finds overlapping occurrences, resetting to
+ * 0 finds the non-overlapping, left-to-right occurrences that
+ * <code>String.split</code> would find.
+ */
+public class EnzymeMatcher {
+
+	private final String myEnzyme;
+	private final int[] myColumn;
+	private final int[][] myNext;
+
+	/**
+	 * Compile the automaton for an enzyme.
+	 * @param enzyme is the pattern searched for
+	 * @throws IllegalArgumentException if enzyme is empty
+	 */
+	public EnzymeMatcher(String enzyme) {
+		if (enzyme.length() == 0) {
+			throw new IllegalArgumentException("enzyme must not be empty");
+		}
+		myEnzyme = enzyme;
+
+		char max = 0;
+		for (int k = 0; k < enzyme.length(); k++) {
+			max = (char) Math.max(max, enzyme.charAt(k));
+		}
+		myColumn = new int[max + 1];
+		Arrays.fill(myColumn, -1);
+		int columns = 0;
+		for (int k = 0; k < enzyme.length(); k++) {
+			if (myColumn[enzyme.charAt(k)] == -1) {
+				myColumn[enzyme.charAt(k)] = columns++;
+			}
+		}
+
+		int m = enzyme.length();
+		myNext = new int[m + 1][columns];
+		myNext[0][myColumn[enzyme.charAt(0)]] = 1;
+		int restart = 0;
+		for (int j = 1; j <= m; j++) {
+			for (int c = 0; c < columns; c++) {
+				myNext[j][c] = myNext[restart][c];
+			}
+			if (j < m) {
+				int col = myColumn[enzyme.charAt(j)];
+				myNext[j][col] = j + 1;
+				restart = myNext[restart][col];
+			}
+		}
+	}
+
+	/**
+	 * @return the enzyme this automaton searches for
+	 */
+	public String getEnzyme() {
+		return myEnzyme;
+	}
+
+	/**
+	 * @return the length of the enzyme, which is also the matching state
+	 */
+	public int length() {
+		return myEnzyme.length();
+	}
+
+	/**
+	 * Advance the automaton by one character.
+	 * @param state is the current state, 0 <= state <= length()
+	 * @param ch is the next character of the strand
+	 * @return the new state, equal to length() if an occurrence ends at ch
+	 */
+	public int next(int state, char ch) {
+		int col = ch < myColumn.length ? myColumn[ch] : -1;
+		return col < 0 ? 0 : myNext[state][col];
+	}
+
+	/**
+	 * Create a splicer that writes the result of cutting at this enzyme
+	 * and splicing in splicee into target.
+	 * @param target receives fragments and splicee, normally empty
+	 * @param splicee is appended in place of every occurrence
+	 * @return a splicer to be fed the source strand in order
+	 */
+	public Splicer splicer(IDnaStrand target, String splicee) {
+		return new Splicer(this, target, splicee);
+	}
+
+	/**
+	 * Streaming cut-and-splice: the source is fed in order, either one
+	 * character or one chunk at a time, and every fragment is appended to
+	 * the target as soon as the site that ends it is found. Only the
+	 * current, still unfinished, fragment is buffered.
+	 */
+	public static class Splicer {
+		private final EnzymeMatcher myMatcher;
+		private final IDnaStrand myTarget;
+		private final String mySplicee;
+		private final StringBuilder myPending;
+		private int myState;
+
+		private Splicer(EnzymeMatcher matcher, IDnaStrand target, String splicee) {
+			myMatcher = matcher;
+			myTarget = target;
+			mySplicee = splicee;
+			myPending = new StringBuilder();
+		}
+
+		/**
+		 * Feed the next character of the source.
+		 * @param ch is the next character
+		 */
+		public void feed(char ch) {
+			myState = myMatcher.next(myState, ch);
+			myPending.append(ch);
+			if (myState == myMatcher.length()) {
+				myPending.setLength(myPending.length() - myState);
+				cut(myPending.toString());
+				myPending.setLength(0);
+			}
+		}
+
+		/**
+		 * Feed the next chunk of the source. Fragments that lie entirely
+		 * inside the chunk are copied once, straight out of the chunk.
+		 * @param chunk is the next run of characters
+		 */
+		public void feed(CharSequence chunk) {
+			int from = 0;
+			int m = myMatcher.length();
+			for (int k = 0; k < chunk.length(); k++) {
+				myState = myMatcher.next(myState, chunk.charAt(k));
+				if (myState == m) {
+					int end = k + 1 - m;
+					if (myPending.length() == 0 && end >= from) {
+						cut(chunk.subSequence(from, end).toString());
+					}
+					else {
+						myPending.append(chunk, from, k + 1);
+						myPending.setLength(myPending.length() - m);
+						cut(myPending.toString());
+						myPending.setLength(0);
+					}
+					from = k + 1;
+				}
+			}
+			myPending.append(chunk, from, chunk.length());
+		}
+
+		/**
+		 * Append the last fragment and return the target.
+		 * @return the target strand holding the recombinant
+		 */
+		public IDnaStrand finish() {
+			myTarget.append(myPending.toString());
+			myPending.setLength(0);
+			return myTarget;
+		}
+
+		private void cut(String fragment) {
+			myTarget.append(fragment);
+			myTarget.append(mySplicee);
+			myState = 0;
+		}
+	}
+}
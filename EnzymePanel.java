@@ -0,0 +1,168 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Restriction digest with a panel of enzymes in a single pass. All the
+ * enzymes are compiled into one Aho-Corasick automaton, with columns for
+ * the distinct characters of the enzymes only, so every base of the strand
+ * costs one table lookup however many enzymes there are.
+ * <P>
+ * When sites of different enzymes overlap, the strand is cut at the site
+ * that ends first; if several sites end at the same base, the longest
+ * enzyme wins. Scanning then starts again after that site, so a base is
+ * never part of two sites. For a single enzyme this is exactly the rule
+ * used by IDnaStrand.cutAndSplice.
+ */
+public class EnzymePanel {
+
+	private final String[] myEnzymes;
+	private final String[] mySplicees;
+	private final int[] myColumn;
+	private final int[][] myNext;
+	private final int[] myMatch;	// longest enzyme ending in each state, or -1
+
+	/**
+	 * Compile the automaton for a panel of enzymes.
+	 * @param enzymes maps each enzyme to the splicee that replaces it
+	 * @throws IllegalArgumentException if an enzyme is empty
+	 */
+	public EnzymePanel(Map<String, String> enzymes) {
+		myEnzymes = new String[enzymes.size()];
+		mySplicees = new String[enzymes.size()];
+		int count = 0;
+		int states = 1;
+		char max = 0;
+		for (Map.Entry<String, String> entry : enzymes.entrySet()) {
+			String enzyme = entry.getKey();
+			if (enzyme.length() == 0) {
+				throw new IllegalArgumentException("enzyme must not be empty");
+			}
+			myEnzymes[count] = enzyme;
+			mySplicees[count] = entry.getValue();
+			count++;
+			states += enzyme.length();
+			for (int k = 0; k < enzyme.length(); k++) {
+				max = (char) Math.max(max, enzyme.charAt(k));
+			}
+		}
+
+		myColumn = new int[max + 1];
+		Arrays.fill(myColumn, -1);
+		int columns = 0;
+		for (String enzyme : myEnzymes) {
+			for (int k = 0; k < enzyme.length(); k++) {
+				if (myColumn[enzyme.charAt(k)] == -1) {
+					myColumn[enzyme.charAt(k)] = columns++;
+				}
+			}
+		}
+
+		// build the trie, 0 in myNext means no edge until the links are added
+		int[][] next = new int[states][columns];
+		int[] match = new int[states];
+		Arrays.fill(match, -1);
+		int used = 1;
+		for (int e = 0; e < myEnzymes.length; e++) {
+			int state = 0;
+			for (int k = 0; k < myEnzymes[e].length(); k++) {
+				int col = myColumn[myEnzymes[e].charAt(k)];
+				if (next[state][col] == 0) {
+					next[state][col] = used++;
+				}
+				state = next[state][col];
+			}
+			match[state] = e;
+		}
+
+		// breadth first, turn missing edges into failure transitions
+		int[] fail = new int[used];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int c = 0; c < columns; c++) {
+			if (next[0][c] != 0) {
+				queue.add(next[0][c]);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int state = queue.remove();
+			if (match[state] == -1) {
+				match[state] = match[fail[state]];
+			}
+			for (int c = 0; c < columns; c++) {
+				int child = next[state][c];
+				if (child != 0) {
+					fail[child] = next[fail[state]][c];
+					queue.add(child);
+				}
+				else {
+					next[state][c] = next[fail[state]][c];
+				}
+			}
+		}
+		myNext = Arrays.copyOf(next, used);
+		myMatch = Arrays.copyOf(match, used);
+	}
+
+	/**
+	 * Cut source at every site of every enzyme in this panel, splicing in
+	 * each enzyme's splicee, in one pass over source.
+	 * @param source is the strand digested, left unchanged
+	 * @return the new strand, of the same class as source
+	 */
+	public IDnaStrand digest(IDnaStrand source) {
+		Digester digester = new Digester(source.getInstance(""));
+		source.forEachChunk(digester);
+		return digester.finish();
+	}
+
+	private int next(int state, char ch) {
+		int col = ch < myColumn.length ? myColumn[ch] : -1;
+		return col < 0 ? 0 : myNext[state][col];
+	}
+
+	/**
+	 * Fed the source a chunk at a time, appends each fragment and splicee
+	 * to the target as soon as the site ending the fragment is found.
+	 */
+	private class Digester implements Consumer<CharSequence> {
+		private final IDnaStrand myTarget;
+		private final StringBuilder myPending = new StringBuilder();
+		private int myState;
+
+		Digester(IDnaStrand target) {
+			myTarget = target;
+		}
+
+		@Override
+		public void accept(CharSequence chunk) {
+			int from = 0;
+			for (int k = 0; k < chunk.length(); k++) {
+				myState = next(myState, chunk.charAt(k));
+				int e = myMatch[myState];
+				if (e >= 0) {
+					int m = myEnzymes[e].length();
+					int end = k + 1 - m;
+					if (myPending.length() == 0 && end >= from) {
+						myTarget.append(chunk.subSequence(from, end).toString());
+					}
+					else {
+						myPending.append(chunk, from, k + 1);
+						myPending.setLength(myPending.length() - m);
+						myTarget.append(myPending.toString());
+						myPending.setLength(0);
+					}
+					myTarget.append(mySplicees[e]);
+					myState = 0;
+					from = k + 1;
+				}
+			}
+			myPending.append(chunk, from, chunk.length());
+		}
+
+		IDnaStrand finish() {
+			myTarget.append(myPending.toString());
+			return myTarget;
+		}
+	}
+}
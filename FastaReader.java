@@ -0,0 +1,213 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a multi-record FASTA file into one strand per record, in parallel.
+ * The file is split into byte ranges of about equal size, each moved
+ * forward to the next '>' that starts a line, so every range holds whole
+ * records. The ranges are parsed concurrently, each memory mapped and
+ * parsed as GenomeLoader does, and the records are returned in file
+ * order. Bases before the first header, if any, form a record named "".
+ */
+public class FastaReader {
+
+	private static final int SEARCH_SIZE = 1 << 16;	// bytes read looking for a record start
+	private static final int RANGES_PER_THREAD = 4;
+
+	private FastaReader() {
+	}
+
+	/**
+	 * One record of a FASTA file.
+	 */
+	public static class Record {
+		private final String myName;
+		private final IDnaStrand myStrand;
+
+		Record(String name, IDnaStrand strand) {
+			myName = name;
+			myStrand = strand;
+		}
+
+		/**
+		 * @return the header line of this record, without the '>'
+		 */
+		public String getName() {
+			return myName;
+		}
+
+		/**
+		 * @return the bases of this record
+		 */
+		public IDnaStrand getStrand() {
+			return myStrand;
+		}
+
+		@Override
+		public String toString() {
+			return ">" + myName + " (" + myStrand.size() + " bases)";
+		}
+	}
+
+	/**
+	 * Read every record in a FASTA file into a PackedStrand.
+	 * @param path is the file read
+	 * @return the records, in file order
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<Record> read(Path path) throws IOException {
+		return read(path, new PackedStrand());
+	}
+
+	/**
+	 * Read every record in a FASTA file, using one range per thread
+	 * RANGES_PER_THREAD times over, so uneven records still keep every
+	 * thread busy.
+	 * @param path is the file read
+	 * @param prototype makes the strands, via getInstance
+	 * @return the records, in file order
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<Record> read(Path path, IDnaStrand prototype) throws IOException {
+		return read(path, prototype, RANGES_PER_THREAD * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Read every record in a FASTA file, split into at most ranges byte
+	 * ranges parsed concurrently.
+	 * @param path is the file read
+	 * @param prototype makes the strands, via getInstance
+	 * @param ranges is the number of ranges the file is split into
+	 * @return the records, in file order
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if ranges is not positive
+	 */
+	public static List<Record> read(Path path, IDnaStrand prototype, int ranges) throws IOException {
+		if (ranges <= 0) {
+			throw new IllegalArgumentException("ranges must be positive: " + ranges);
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long[] bounds = split(channel, ranges);
+			List<List<Record>> parsed = IntStream.range(0, bounds.length - 1)
+					.parallel()
+					.mapToObj(k -> parse(channel, bounds[k], bounds[k + 1], prototype))
+					.collect(Collectors.toList());
+			List<Record> records = new ArrayList<>();
+			for (List<Record> list : parsed) {
+				records.addAll(list);
+			}
+			return records;
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Split the file into ranges that each start at a record, or at 0.
+	 * @return increasing offsets, first 0 and last the file size
+	 */
+	private static long[] split(FileChannel channel, int ranges) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[ranges + 1];
+		int count = 1;
+		for (int k = 1; k < ranges; k++) {
+			long from = Math.max(size / ranges * k, bounds[count - 1] + 1);
+			if (from >= size) {
+				break;
+			}
+			long start = recordStart(channel, from);
+			if (start >= size) {
+				break;
+			}
+			bounds[count++] = start;
+		}
+		bounds[count++] = size;
+		long[] ret = new long[count];
+		System.arraycopy(bounds, 0, ret, 0, count);
+		return ret;
+	}
+
+	/**
+	 * @return the offset of the first '>' at or after from that starts a
+	 * line, or the file size if there is none
+	 */
+	private static long recordStart(FileChannel channel, long from) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SEARCH_SIZE);
+		long pos = from - 1;
+		byte prev = 0;
+		boolean first = true;
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, pos);
+			if (n <= 0) {
+				return channel.size();
+			}
+			for (int k = 0; k < n; k++) {
+				byte b = buffer.get(k);
+				if (!first && b == '>' && prev == '\n') {
+					return pos + k;
+				}
+				prev = b;
+				first = false;
+			}
+			pos += n;
+		}
+	}
+
+	private static List<Record> parse(FileChannel channel, long start, long end, IDnaStrand prototype) {
+		RecordParser parser = new RecordParser(prototype);
+		try {
+			GenomeLoader.parse(channel, start, end, parser);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		parser.finish();
+		return parser.records();
+	}
+
+	/**
+	 * Starts a new strand at every header line.
+	 */
+	private static class RecordParser extends GenomeLoader.Parser {
+		private final IDnaStrand myPrototype;
+		private final List<Record> myRecords = new ArrayList<>();
+
+		RecordParser(IDnaStrand prototype) {
+			this(prototype, prototype.getInstance(""));
+		}
+
+		private RecordParser(IDnaStrand prototype, IDnaStrand unnamed) {
+			super(unnamed);
+			myPrototype = prototype;
+			myRecords.add(new Record("", unnamed));
+		}
+
+		@Override
+		void header(String name) {
+			IDnaStrand strand = myPrototype.getInstance("");
+			myRecords.add(new Record(name, strand));
+			setTarget(strand);
+		}
+
+		/**
+		 * @return the records parsed, with the unnamed one first only if it
+		 * has bases
+		 */
+		List<Record> records() {
+			if (myRecords.get(0).getStrand().size() == 0) {
+				return myRecords.subList(1, myRecords.size());
+			}
+			return myRecords;
+		}
+	}
+}
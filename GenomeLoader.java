@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads DNA from a plain or FASTA file into a strand without reading the
+ * file through a Scanner or building the whole sequence as one String.
+ * The file is memory mapped, in regions of at most REGION_SIZE bytes so
+ * files larger than 2GB load too. FASTA header lines, those starting with
+ * '>', are skipped, and every other byte goes through a lookup table that
+ * lower-cases a, c, g, t and drops anything else. Bases are appended to
+ * the strand BUFFER_SIZE at a time.
+ */
+public class GenomeLoader {
+
+	private static final long REGION_SIZE = 1L << 30;	// bytes mapped at once
+	private static final int BUFFER_SIZE = 1 << 16;	// bases appended at once
+
+	// BASE[b] is the lower case base for byte b, or 0 if b is not a base
+	static final char[] BASE = new char[256];
+	static {
+		for (char ch : "acgt".toCharArray()) {
+			BASE[ch] = ch;
+			BASE[Character.toUpperCase(ch)] = ch;
+		}
+	}
+
+	private GenomeLoader() {
+	}
+
+	/**
+	 * Load the DNA in a file into a PackedStrand.
+	 * @param path is the file read
+	 * @return a strand holding every base in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static IDnaStrand load(Path path) throws IOException {
+		return load(path, new PackedStrand());
+	}
+
+	/**
+	 * Load the DNA in a file into target, replacing what target held.
+	 * @param path is the file read
+	 * @param target is the strand the bases are appended to
+	 * @return target, holding every base in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static IDnaStrand load(Path path, IDnaStrand target) throws IOException {
+		target.initialize("");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			Parser parser = new Parser(target);
+			parse(channel, 0, channel.size(), parser);
+			parser.finish();
+		}
+		return target;
+	}
+
+	/**
+	 * Feed bytes [start, end) of channel to parser, mapping at most
+	 * REGION_SIZE bytes at a time.
+	 */
+	static void parse(FileChannel channel, long start, long end, Parser parser) throws IOException {
+		byte[] bytes = new byte[BUFFER_SIZE];
+		for (long pos = start; pos < end; pos += REGION_SIZE) {
+			long length = Math.min(REGION_SIZE, end - pos);
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+			while (region.hasRemaining()) {
+				int n = Math.min(bytes.length, region.remaining());
+				region.get(bytes, 0, n);
+				parser.parse(bytes, n);
+			}
+		}
+	}
+
+	/**
+	 * Turns FASTA bytes into bases appended to a strand. Keeps its state
+	 * between calls, so a header or line may be split across calls. The
+	 * text of each header line is passed to header(), which ignores it;
+	 * subclasses can override it to start a new record.
+	 */
+	static class Parser {
+		private IDnaStrand myTarget;
+		private final char[] myBuffer = new char[BUFFER_SIZE];
+		private int myCount;
+		private boolean myLineStart = true;
+		private boolean myHeader;
+		private final StringBuilder myName = new StringBuilder();
+
+		Parser(IDnaStrand target) {
+			myTarget = target;
+		}
+
+		/**
+		 * Parse bytes[0..n).
+		 */
+		void parse(byte[] bytes, int n) {
+			for (int k = 0; k < n; k++) {
+				byte b = bytes[k];
+				if (b == '\n') {
+					if (myHeader) {
+						endHeader();
+					}
+					myLineStart = true;
+					continue;
+				}
+				if (myLineStart && b == '>') {
+					myHeader = true;
+					myName.setLength(0);
+				}
+				else if (myHeader) {
+					myName.append((char) (b & 0xFF));
+				}
+				else {
+					char ch = BASE[b & 0xFF];
+					if (ch != 0) {
+						myBuffer[myCount++] = ch;
+						if (myCount == myBuffer.length) {
+							flush();
+						}
+					}
+				}
+				myLineStart = false;
+			}
+		}
+
+		/**
+		 * Called with the text after '>' of every header line, once the
+		 * bases before it have been flushed.
+		 * @param name is the header text, trimmed
+		 */
+		void header(String name) {
+		}
+
+		/**
+		 * Append bases to target from now on.
+		 */
+		void setTarget(IDnaStrand target) {
+			myTarget = target;
+		}
+
+		/**
+		 * Finish a header that ends the input and flush the last bases.
+		 */
+		void finish() {
+			if (myHeader) {
+				endHeader();
+			}
+			flush();
+		}
+
+		private void endHeader() {
+			myHeader = false;
+			flush();
+			header(myName.toString().trim());
+		}
+
+		/**
+		 * Append the bases buffered so far to the target.
+		 */
+		void flush() {
+			if (myCount > 0) {
+				myTarget.append(new String(myBuffer, 0, myCount));
+				myCount = 0;
+			}
+		}
+	}
+}
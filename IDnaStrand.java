@@ -1,4 +1,17 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Interface for DNA/strand experiments
@@ -9,23 +22,42 @@ import java.util.Iterator;
 public interface IDnaStrand extends Iterable<Character>{
 	/**
 	 * Cut this strand at every occurrence of enzyme, essentially replacing
-	 * every occurrence of enzyme with splicee.
+	 * every occurrence of enzyme with splicee. Occurrences are found left
+	 * to right and do not overlap. The strand is walked once with
+	 * forEachChunk and each fragment is appended to the result as it is found.
 	 * @param enzyme is the pattern/strand searched for and replaced
 	 * @param splicee is the pattern/strand replacing each occurrence of enzyme
 	 * @return the new strand leaving the original strand unchanged.
+	 * @throws IllegalArgumentException if enzyme is empty
 	 */
 	default IDnaStrand cutAndSplice(String enzyme, String splicee) {
-		String search = this.toString();
-		IDnaStrand ret = getInstance("");
-		// Splits dna strand by enzyme, leaving empty strings
-		// in case of leading, repeating, or trailing enzymes
-		String[] fragments = search.split(enzyme+"{1}", -1);
-		for (int i=0; i<fragments.length-1; i++) {    // splicing in
-			ret.append(fragments[i]);
-			ret.append(splicee);
-		}
-		ret.append(fragments[fragments.length-1]);    // adding last fragment
-		return ret;
+		EnzymeMatcher.Splicer splicer = new EnzymeMatcher(enzyme).splicer(getInstance(""), splicee);
+		forEachChunk(splicer::feed);
+		return splicer.finish();
+	}
+
+	/**
+	 * Same result as cutAndSplice, computed with fork/join tasks when this
+	 * strand has at least ParallelSplicer.PARALLEL_THRESHOLD bases.
+	 * @param enzyme is the pattern/strand searched for and replaced
+	 * @param splicee is the pattern/strand replacing each occurrence of enzyme
+	 * @return the new strand leaving the original strand unchanged.
+	 */
+	default IDnaStrand parallelCutAndSplice(String enzyme, String splicee) {
+		return ParallelSplicer.cutAndSplice(this, enzyme, splicee);
+	}
+
+	/**
+	 * Restriction digest with a panel of enzymes in one pass: cut this strand
+	 * at every site of every enzyme, splicing in that enzyme's splicee. Where
+	 * sites overlap, the one that ends first is cut, the longest enzyme if
+	 * several end at the same base, see EnzymePanel.
+	 * @param enzymes maps each enzyme to the splicee that replaces it
+	 * @return the new strand leaving the original strand unchanged.
+	 * @throws IllegalArgumentException if an enzyme is empty
+	 */
+	default IDnaStrand digest(Map<String, String> enzymes) {
+		return new EnzymePanel(enzymes).digest(this);
 	}
 
 	/**
@@ -60,7 +92,17 @@ public interface IDnaStrand extends Iterable<Character>{
 	 * @return a string representing this strand and its characteristics
 	 */
 	default public String strandInfo() {
-		return this.getClass().getName();
+		return this.getClass().getName() + " " + stats();
+	}
+
+	/**
+	 * Return a snapshot of the size, storage and counters of this strand,
+	 * see StrandStats. This default reports one fragment of two bytes per
+	 * base and no counters.
+	 * @return the statistics of this strand as it is now
+	 */
+	default StrandStats stats() {
+		return new StrandStats(size(), 2 * size(), 1, getAppendCount(), 0, 0, 0);
 	}
 
 	/**
@@ -79,6 +121,17 @@ public interface IDnaStrand extends Iterable<Character>{
 	 */
 	public IDnaStrand reverse();
 
+	/**
+	 * Returns an IDnaStrand that is the reverse complement of this strand,
+	 * a and t swapped and c and g swapped, e.g., for "CGAT" returns "ATCG".
+	 * Any character that is not a base is kept as it is.
+	 * 
+	 * @return reverse complement strand
+	 */
+	default IDnaStrand reverseComplement() {
+		return getInstance(Nucleotides.reverseComplement(this.toString()));
+	}
+
 	/**
 	 * Returns the number of times append has been called.
 	 * 
@@ -93,6 +146,43 @@ public interface IDnaStrand extends Iterable<Character>{
 	 * @throws IndexOutOfBoundsException if index < 0 or inde >= size()
 	 */
 	public char charAt(int index);
+
+	/**
+	 * Returns character at a specified index, where 0 <= index < size(),
+	 * for strands that may hold more than Integer.MAX_VALUE bases. This
+	 * default only accepts indexes that fit in an int; LinkStrand,
+	 * PackedStrand, RopeStrand and StrandView accept any index.
+	 * @param index specifies which character will be returned
+	 * @return the character at index
+	 * @throws IndexOutOfBoundsException if index < 0 or index >= size()
+	 */
+	default char charAt(long index) {
+		if (index < 0 || index > Integer.MAX_VALUE) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + size());
+		}
+		return charAt((int) index);
+	}
+
+	/**
+	 * Find the first occurrence of pattern that starts at or after from,
+	 * reading forward with charAt(long), so a strand that is fast for
+	 * sequential indexes searches in O(n).
+	 * @param pattern is the pattern searched for
+	 * @param from is the first index an occurrence may start at
+	 * @return the index where the occurrence starts, or -1 if there is none
+	 * @throws IllegalArgumentException if pattern is empty
+	 */
+	default long indexOf(String pattern, long from) {
+		EnzymeMatcher matcher = new EnzymeMatcher(pattern);
+		int state = 0;
+		for (long k = Math.max(0, from); k < size(); k++) {
+			state = matcher.next(state, charAt(k));
+			if (state == matcher.length()) {
+				return k + 1 - state;
+			}
+		}
+		return -1;
+	}
 	
 	/**
 	 * Satisfy the Iterable<Character> interface
@@ -101,5 +191,221 @@ public interface IDnaStrand extends Iterable<Character>{
 	default Iterator<Character> iterator(){
 		return new CharDnaIterator(this);
 	}
+
+	/**
+	 * Return an iterator over the bases of this strand as ints, with no
+	 * boxing. Implementations walk their own storage; this default falls
+	 * back on charAt(long) with consecutive indexes.
+	 * @return a primitive iterator over this DNA sequence
+	 */
+	default PrimitiveIterator.OfInt charIterator() {
+		return new PrimitiveIterator.OfInt() {
+			private long myIndex = 0;
+
+			@Override
+			public boolean hasNext() {
+				return myIndex < size();
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return charAt(myIndex++);
+			}
+		};
+	}
+
+	/**
+	 * Return a sized spliterator over the bases of this strand that splits
+	 * on the implementation's storage boundaries, so that chars().parallel()
+	 * can spread work over several cores. This default splits index ranges
+	 * and reads with charAt(long), so it is only safe in parallel when charAt is
+	 * safe to call from several threads.
+	 * @return a splittable spliterator over this DNA sequence
+	 */
+	default Spliterator.OfInt charSpliterator() {
+		return new RangeSpliterator(i -> charAt(i), 0, size());
+	}
+
+	/**
+	 * Return the bases of this strand as a stream of ints, with no boxing.
+	 * The stream can be made parallel.
+	 * @return a sequential stream over this DNA sequence
+	 */
+	default IntStream chars() {
+		return StreamSupport.intStream(charSpliterator(), false);
+	}
+
+	/**
+	 * Pass every base of this strand, in order, to action as a sequence of
+	 * chunks that are usually the implementation's own storage, so no base
+	 * is copied. A chunk is only valid during the call and must not be
+	 * kept or changed. This default passes toString() as a single chunk.
+	 * @param action is called once per chunk
+	 */
+	default void forEachChunk(Consumer<CharSequence> action) {
+		action.accept(this.toString());
+	}
+
+	/**
+	 * Pass bases [start, end) of this strand to action as chunks, with the
+	 * same rules as forEachChunk. This default walks every chunk of
+	 * forEachChunk and wraps the part in the range without copying it;
+	 * implementations start at the chunk holding start.
+	 * @param start is the index of the first base passed
+	 * @param end is one past the index of the last base passed
+	 * @param action is called once per chunk
+	 * @throws IndexOutOfBoundsException if start < 0, end > size() or
+	 *         start > end
+	 */
+	default void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		Objects.checkFromToIndex(start, end, size());
+		long[] from = {0};
+		forEachChunk(chunk -> {
+			long first = from[0];
+			from[0] += chunk.length();
+			if (from[0] > start && first < end) {
+				int lo = (int) (Math.max(start, first) - first);
+				int hi = (int) (Math.min(end, from[0]) - first);
+				action.accept(lo == 0 && hi == chunk.length() ? chunk : CharBuffer.wrap(chunk, lo, hi));
+			}
+		});
+	}
+
+	/**
+	 * Copy bases [start, end) of this strand into dst, starting at
+	 * dst[dstBegin], in one pass over the chunks in the range.
+	 * @param start is the index of the first base copied
+	 * @param end is one past the index of the last base copied
+	 * @param dst receives the bases
+	 * @param dstBegin is where the first base is stored in dst
+	 * @throws IndexOutOfBoundsException if the range is not inside this
+	 *         strand or the bases do not fit in dst
+	 */
+	default void getChars(long start, long end, char[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, size());
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		int[] at = {dstBegin};
+		forEachChunk(start, end, chunk -> {
+			copyChars(chunk, dst, at[0]);
+			at[0] += chunk.length();
+		});
+	}
+
+	/**
+	 * Copy bases [start, end) of this strand into dst as one byte each,
+	 * starting at dst[dstBegin], in one pass over the chunks in the range.
+	 * @param start is the index of the first base copied
+	 * @param end is one past the index of the last base copied
+	 * @param dst receives the bases
+	 * @param dstBegin is where the first base is stored in dst
+	 * @throws IndexOutOfBoundsException if the range is not inside this
+	 *         strand or the bases do not fit in dst
+	 */
+	default void getBytes(long start, long end, byte[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, size());
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		int[] at = {dstBegin};
+		forEachChunk(start, end, chunk -> {
+			for (int k = 0; k < chunk.length(); k++) {
+				dst[at[0]++] = (byte) chunk.charAt(k);
+			}
+		});
+	}
+
+	/**
+	 * Return bases [start, end) of this strand as a strand of its own,
+	 * independent of this one as reverse() is. The implementations return
+	 * a view or share their storage, so no base is copied; this default
+	 * copies the range into a new strand with getInstance.
+	 * @param start is the index of the first base
+	 * @param end is one past the index of the last base
+	 * @return a strand holding the bases in the range
+	 * @throws IndexOutOfBoundsException if start < 0, end > size() or
+	 *         start > end
+	 */
+	default IDnaStrand subStrand(long start, long end) {
+		Objects.checkFromToIndex(start, end, size());
+		char[] chars = new char[(int) (end - start)];
+		getChars(start, end, chars, 0);
+		return getInstance(new String(chars));
+	}
+
+	/**
+	 * Append every base of this strand to out, a chunk at a time, without
+	 * building the strand as a String.
+	 * @param out receives the bases
+	 * @throws IOException if out fails
+	 */
+	default void writeTo(Appendable out) throws IOException {
+		try {
+			forEachChunk(chunk -> {
+				try {
+					out.append(chunk);
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Write every base of this strand to out as one byte each, through a
+	 * buffer of StreamingSplicer.BUFFER_SIZE bytes, in one pass over the
+	 * chunks of the strand. out is not closed.
+	 * @param out receives the bases
+	 * @return the number of bytes written, size()
+	 * @throws IOException if out fails
+	 */
+	default long writeTo(WritableByteChannel out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(StreamingSplicer.BUFFER_SIZE);
+		try {
+			forEachChunk(chunk -> {
+				try {
+					for (int k = 0; k < chunk.length(); k++) {
+						if (!buffer.hasRemaining()) {
+							StreamingSplicer.drain(buffer, out);
+						}
+						buffer.put((byte) chunk.charAt(k));
+					}
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		StreamingSplicer.drain(buffer, out);
+		return size();
+	}
+
+	/**
+	 * Copy all of chunk into dst from dstBegin, in bulk for the chunk types
+	 * the implementations pass.
+	 */
+	private static void copyChars(CharSequence chunk, char[] dst, int dstBegin) {
+		if (chunk instanceof String) {
+			((String) chunk).getChars(0, chunk.length(), dst, dstBegin);
+		}
+		else if (chunk instanceof StringBuilder) {
+			((StringBuilder) chunk).getChars(0, chunk.length(), dst, dstBegin);
+		}
+		else if (chunk instanceof CharBuffer) {
+			((CharBuffer) chunk).duplicate().get(dst, dstBegin, chunk.length());
+		}
+		else {
+			for (int k = 0; k < chunk.length(); k++) {
+				dst[dstBegin + k] = chunk.charAt(k);
+			}
+		}
+	}
 	
 }
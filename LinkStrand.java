@@ -1,16 +1,63 @@
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.function.Consumer;
 
-
-
+/**
+ * Implementation of IDnaStrand as a linked list of nodes. A long append is
+ * linked as a node of its own, holding the appended String with no copy.
+ * Short appends are copied into the last node instead, when it is a chunk:
+ * a StringBuilder of CHUNK_SIZE chars that is filled in place and never
+ * grows past that. So a strand built from many short pieces takes about
+ * one node per CHUNK_SIZE bases, while getAppendCount() still counts
+ * every append.
+ * <P>
+ * A node is a slice, offset and length, of its chars, which are never
+ * changed: a chunk is only ever added to past the bases already in it.
+ * So views and iterators that read only the bases there were when they
+ * were made are not changed by later appends, and cutAndSplice builds its
+ * result from slices of this strand's chars rather than copies.
+ * <P>
+ * Reads are safe from any number of threads at once. charAt reads an
+ * offset index that append extends as nodes are linked, and that is
+ * only ever written past the nodes already in it. The thread that
+ * initialized the strand reads through a cursor of its own, so its
+ * sequential reads are O(1); any other thread binary searches the index
+ * and writes nothing, so readers never contend. Threads that scan should
+ * use charIterator(from), forEachChunk, or spliterators, which all have
+ * cursors of their own, as do the bulk reads of views. Changing a strand
+ * while other threads read it still needs outside synchronization.
+ */
 public class LinkStrand implements IDnaStrand {
-    private class Node {
-        String info;
+    private static class Node {
+        CharSequence info;     // a String, or a StringBuilder chunk
+        int offset;
+        int length;            // grows only while this is the strand's chunk
         Node next;
-        Node(String x){
-            info = x;
+        Node(CharSequence x){
+            this(x, 0, x.length());
         }
-        Node(String x, Node node){
+        Node(CharSequence x, int start, int size){
             info = x;
-            next = node;
+            offset = start;
+            length = size;
+        }
+        char charAt(int k) {
+            return info.charAt(offset + k);
+        }
+        /**
+         * @return the chars of this node, wrapped if it is a slice
+         */
+        CharSequence chars() {
+            if (offset == 0 && length == info.length()) {
+                return info;
+            }
+            return CharBuffer.wrap(info, offset, offset + length);
         }
     }
 
@@ -23,24 +70,46 @@ public class LinkStrand implements IDnaStrand {
 
     }
     private Node myFirst, myLast;
+    private StringBuilder myChunk;     // chars of myLast if it is this strand's chunk
     private long mySize;
     private int myAppends;
-    private int myIndex;
-    private Node myCurrent;
-    private int myLocalIndex;
+    private long myOwner;               // id of the thread that initialized this strand
+    private Cursor myOwnerCursor;       // its charAt cursor, no other thread touches it
+
+    // Offset index over the nodes, extended whenever a node is linked:
+    // myNodes[k] is the k-th node and myStarts[k] the index of its first
+    // character, for 0 <= k < myIndexed
+    private Node[] myNodes;
+    private long[] myStarts;
+    private int myIndexed;
+
+    // The charAt position of the owner: the node it is in, which is
+    // myNodes[pos], and the index of the node's first character
+    private static class Cursor {
+        int pos;
+        long start;
+    }
+
+    // counted only if StrandStats.ENABLED, and not exactly if several
+    // threads read at once
+    private long myHits, myMisses, myMaterializations;
+
+    // estimated heap bytes of a Node and its String, not counting the chars
+    private static final int NODE_BYTES = 64;
+
+    // chars in a chunk, and appends shorter than this are copied into one
+    private static final int CHUNK_SIZE = 1024;
+    private static final int COALESCE_LIMIT = 128;
 
     @Override
     public void initialize(String source) {
         myFirst = new Node (source);
-        myIndex = 0;
-        myCurrent = myFirst;
-        myLocalIndex = 0;
         myAppends = 0;
         mySize = source.length();
         myLast = myFirst;
-        
-
-
+        myChunk = null;
+        myOwner = Thread.currentThread().getId();
+        index();
     }
 
     @Override
@@ -52,25 +121,77 @@ public class LinkStrand implements IDnaStrand {
         return mySize;
     }
 
+    /**
+     * Appends shorter than COALESCE_LIMIT fill the last chunk, and new
+     * chunks as needed; anything longer is linked as a node of its own.
+     */
     @Override
     public IDnaStrand append (String dna) {
-        myLast.next = new Node (dna);
-        myLast = myLast.next;
+        if (dna.length() < COALESCE_LIMIT) {
+            int from = 0;
+            while (from < dna.length()) {
+                if (myChunk == null || myChunk.length() == CHUNK_SIZE) {
+                    StringBuilder chunk = new StringBuilder(CHUNK_SIZE);
+                    link(new Node (chunk));
+                    myChunk = chunk;
+                }
+                int to = Math.min(dna.length(), from + CHUNK_SIZE - myChunk.length());
+                myChunk.append(dna, from, to);
+                myLast.length = myChunk.length();
+                from = to;
+            }
+        }
+        else {
+            link(new Node (dna));
+        }
+        mySize+= dna.length();
+        myAppends++;
+        return this;
+
+    }
+
+    /**
+     * Append dna as a node of its own however short it is, so it is never
+     * copied, for builders handing over fragments they already hold.
+     * @param dna is the fragment linked
+     * @return this strand after the fragment has been linked
+     */
+    LinkStrand appendLinked(String dna) {
+        if (dna.length() > 0) {
+            link(new Node (dna));
+        }
         mySize+= dna.length();
         myAppends++;
         return this;
+    }
 
+    /**
+     * Link node after the last one. It is not this strand's chunk, so
+     * later short appends start a new chunk after it.
+     */
+    private void link(Node node) {
+        myLast.next = node;
+        myLast = node;
+        myChunk = null;
+        index(node, myStarts[myIndexed - 1] + myNodes[myIndexed - 1].length);
     }
     @Override
     public int getAppendCount () {
         return myAppends;
     }
+    /**
+     * Node by node into a builder of exactly size() chars, so the bases
+     * are copied once into the builder and once into the String.
+     */
     @Override
     public String toString () {
-        StringBuilderStrand val = new StringBuilderStrand();
+        if (StrandStats.ENABLED) {
+            myMaterializations++;
+        }
+        StringBuilder val = new StringBuilder((int) mySize);
         Node help = myFirst;
         while (help != null) {
-            val.append (help.info);
+            val.append (help.info, help.offset, help.offset + help.length);
             help = help.next;
 
         }
@@ -78,50 +199,478 @@ public class LinkStrand implements IDnaStrand {
         return val.toString();
     }
 
+    /**
+     * Cut and splice by walking the node list directly rather than
+     * materializing the whole strand with toString(). No base is copied:
+     * each fragment is linked as slices of the nodes it lies in, and every
+     * break links a node holding the same splicee String. So the result
+     * takes O(breaks + nodes) small nodes, and the cost depends on the
+     * size of this strand and the number of breaks but not on the length
+     * of the splicee. The result shares this strand's chars, which never
+     * change, so the two stay independent.
+     */
     @Override
-    public IDnaStrand reverse() {
-        Node helper = myFirst;
+    public IDnaStrand cutAndSplice(String enzyme, String splicee) {
+        EnzymeMatcher matcher = new EnzymeMatcher(enzyme);
+        int m = matcher.length();
         LinkStrand ret = new LinkStrand();
+        Node fromNode = myFirst;    // node holding from, which starts at fromStart
+        long fromStart = 0;
+        long from = 0;
+        long pos = 0;
+        int breaks = 0;
+        int state = 0;
+        for (Node help = myFirst; help != null; help = help.next) {
+            for (int k = 0; k < help.length; k++, pos++) {
+                state = matcher.next(state, help.charAt(k));
+                if (state == m) {
+                    ret.linkSlices(fromNode, fromStart, from, pos + 1 - m);
+                    ret.link(new Node (splicee));
+                    ret.mySize += splicee.length();
+                    from = pos + 1;
+                    fromNode = help;
+                    fromStart = pos - k;
+                    breaks++;
+                    state = 0;
+                }
+            }
+        }
+        ret.linkSlices(fromNode, fromStart, from, mySize);
+        ret.myAppends = 2 * breaks + 1;
+        return ret;
+    }
+
+    /**
+     * Link slices of node and the nodes after it holding bases [from, to)
+     * of the strand they belong to.
+     * @param node holds from
+     * @param start is the index of the first base of node
+     */
+    private void linkSlices(Node node, long start, long from, long to) {
+        while (from < to) {
+            long end = start + node.length;
+            if (from < end) {
+                int lo = (int) (from - start);
+                int hi = (int) (Math.min(to, end) - start);
+                link(new Node (node.info, node.offset + lo, hi - lo));
+                mySize += hi - lo;
+                from = start + hi;
+            }
+            start = end;
+            node = node.next;
+        }
+    }
 
-        while (helper != null) {
-            StringBuilder h = new StringBuilder();
-            h.append (helper.info);
-            Node temp = new Node (h.reverse().toString());
-            ret.mySize+= h.length();
+    /**
+     * O(1): a view reading the nodes backwards through the offset index.
+     * Node chars never change and appends only add bases past the ones
+     * the view can see, so this strand and its reverse stay independent.
+     */
+    @Override
+    public IDnaStrand reverse() {
+        return new StrandView(this, new Window(myNodes, myStarts, myIndexed), mySize, true);
+    }
+
+    /**
+     * Node by node: each node is reverse complemented in one pass and
+     * linked in front of the ones before it.
+     */
+    @Override
+    public IDnaStrand reverseComplement() {
+        LinkStrand ret = new LinkStrand();
+        Node help = myFirst;
+        while (help != null) {
+            Node temp = new Node (Nucleotides.reverseComplement(help.chars()));
             temp.next = ret.myFirst;
             ret.myFirst = temp;
-            helper = helper.next;
+            ret.mySize += help.length;
+            help = help.next;
         }
+        ret.index();
+        return ret;
+    }
 
+    @Override
+    public void forEachChunk(Consumer<CharSequence> action) {
+        Node help = myFirst;
+        while (help != null) {
+            action.accept(help.chars());
+            help = help.next;
+        }
+    }
 
-        return ret;
+    /**
+     * Finds the node holding start through the offset index and walks the
+     * nodes from there. Nodes inside the range are passed as they are,
+     * the ones at either end are wrapped around the part in the range.
+     */
+    @Override
+    public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+        Objects.checkFromToIndex(start, end, mySize);
+        if (start == end) {
+            return;
+        }
+        int pos = findNode(myStarts, myIndexed, start);
+        Node help = myNodes[pos];
+        long first = myStarts[pos];
+        while (first < end) {
+            int lo = (int) (Math.max(start, first) - first);
+            int hi = (int) (Math.min(end, first + help.length) - first);
+            if (lo == 0 && hi == help.length) {
+                action.accept(help.chars());
+            }
+            else if (lo < hi) {
+                action.accept(CharBuffer.wrap(help.info, help.offset + lo, help.offset + hi));
+            }
+            first += help.length;
+            help = help.next;
+        }
+    }
+
+    /**
+     * O(1): a view of the range read through the offset index, like
+     * reverse().
+     */
+    @Override
+    public IDnaStrand subStrand(long start, long end) {
+        Objects.checkFromToIndex(start, end, mySize);
+        return new StrandView(this, new Window(myNodes, myStarts, myIndexed), start, end - start, false, false);
+    }
+
+    /**
+     * Walks the nodes with a cursor of its own, so iterating never moves
+     * the charAt cursor.
+     */
+    @Override
+    public PrimitiveIterator.OfInt charIterator() {
+        return charIterator(0);
+    }
+
+    /**
+     * An iterator over the bases from index from on, which finds the node
+     * holding from in the offset index and then walks the nodes with a
+     * cursor of its own, O(1) per base. Any number of threads can scan
+     * this strand at once this way without touching each other's cursor.
+     * @param from is the index of the first base returned
+     * @return a primitive iterator over bases [from, size())
+     * @throws IndexOutOfBoundsException if from < 0 or from > size()
+     */
+    public PrimitiveIterator.OfInt charIterator(long from) {
+        if (from < 0 || from > mySize) {
+            throw new IndexOutOfBoundsException("index " + from + " size " + mySize);
+        }
+        int pos = findNode(myStarts, myIndexed, from);
+        Node first = myNodes[pos];
+        int local = (int) (from - myStarts[pos]);
+        return new PrimitiveIterator.OfInt() {
+            private Node myNode = first;
+            private int myLocal = local;
+
+            @Override
+            public boolean hasNext() {
+                while (myNode != null && myLocal >= myNode.length) {
+                    myNode = myNode.next;
+                    myLocal = 0;
+                }
+                return myNode != null;
+            }
 
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return myNode.charAt(myLocal++);
+            }
+        };
     }
 
+    /**
+     * Boxes the bases of charIterator(), so the iterator has a cursor of
+     * its own rather than reading through charAt.
+     */
+    @Override
+    public Iterator<Character> iterator() {
+        PrimitiveIterator.OfInt it = charIterator();
+        return new Iterator<Character>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
 
+            @Override
+            public Character next() {
+                return (char) it.nextInt();
+            }
+        };
+    }
+
+    /**
+     * Splits at node boundaries over a snapshot of the offset index, each
+     * part with its own cursor, so the parts can be walked in parallel.
+     */
+    @Override
+    public Spliterator.OfInt charSpliterator() {
+        return new NodeSpliterator(myNodes, myStarts, myIndexed, 0, mySize, 0);
+    }
+
+    /**
+     * Sequential indexes from the thread that initialized this strand are
+     * O(1): its cursor stays in the current node or steps to the next one.
+     * Any other index, or any index from another thread, is found by
+     * binary search in the node offset index, O(log nodes), then O(1)
+     * inside the node.
+     */
     @Override
     public char charAt(int index) {
+        return charAt((long) index);
+    }
+
+    /**
+     * Same as charAt(int); the cursor and the offset index are long, so
+     * every base of a strand longer than Integer.MAX_VALUE can be read.
+     * Threads other than the owner only read the strand, so any number of
+     * them never contend. Only the owner's id is kept, so neither a strand
+     * nor a thread is held by the other.
+     */
+    @Override
+    public char charAt(long index) {
         if (index < 0 || index >= mySize) {
             throw new IndexOutOfBoundsException();
         }
-        if (index <= myIndex) {
-            myIndex = 0;
-            myLocalIndex = 0;
-            myCurrent = myFirst;
+        if (Thread.currentThread().getId() != myOwner) {
+            int pos = findNode(myStarts, myIndexed, index);
+            return myNodes[pos].charAt((int) (index - myStarts[pos]));
         }
-        while (index != myIndex) {
-            myIndex += 1;
-            myLocalIndex += 1;
+        Cursor c = myOwnerCursor;
+        long end = c.start + myNodes[c.pos].length;
+        if (index >= c.start && index < end) {
+            if (StrandStats.ENABLED) {
+                myHits++;
+            }
+        }
+        else if (index == end && c.pos + 1 < myIndexed) {
+            do {
+                c.pos++;
+            } while (myNodes[c.pos].length == 0);
+            c.start = myStarts[c.pos];
+            if (StrandStats.ENABLED) {
+                myHits++;
+            }
+        }
+        else {
+            c.pos = findNode(myStarts, myIndexed, index);
+            c.start = myStarts[c.pos];
+            if (StrandStats.ENABLED) {
+                myMisses++;
+            }
+        }
+        return myNodes[c.pos].charAt((int) (index - c.start));
+    }
+
+    /**
+     * Walks the nodes to count them. Slices are counted at their length,
+     * though they share chars with the strand they were cut from, and the
+     * chunk being filled at its full capacity. A cursor hit is a charAt
+     * by the owner in its cursor's node or the next one, a miss needs a
+     * binary search; other threads' reads are not counted.
+     */
+    @Override
+    public StrandStats stats() {
+        long nodes = 0;
+        long chars = 0;
+        for (Node help = myFirst; help != null; help = help.next) {
+            nodes++;
+            chars += help.length;
+        }
+        if (myChunk != null) {
+            chars += myChunk.capacity() - myChunk.length();
+        }
+        long bytes = chars + NODE_BYTES * nodes + 12L * myNodes.length;
+        return new StrandStats(mySize, bytes, nodes, myAppends, myHits, myMisses, myMaterializations);
+    }
 
-            if (myCurrent.info.length() <= myLocalIndex && myCurrent.next != null) {
-                myLocalIndex = 0;
-                myCurrent = myCurrent.next;
+    /**
+     * @return the position of the last of the first count nodes that
+     *         starts at or before index
+     */
+    private static int findNode(long[] starts, int count, long index) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= index) {
+                lo = mid;
+            }
+            else {
+                hi = mid - 1;
             }
         }
+        return lo;
+    }
 
-        return myCurrent.info.charAt(myLocalIndex);
+    /**
+     * Build the offset index over every node from myFirst, and start the
+     * charAt cursor again at the first node, since the one there was may
+     * be the position of another node.
+     */
+    private void index() {
+        myNodes = new Node[16];
+        myStarts = new long[16];
+        myIndexed = 0;
+        long start = 0;
+        for (Node help = myFirst; help != null; help = help.next) {
+            index(help, start);
+            start += help.length;
+        }
+        myOwnerCursor = new Cursor();
     }
 
-}
+    /**
+     * Add node, whose first character is at start, to the end of the
+     * offset index. Entries already in the index are never written, so
+     * views and spliterators holding the arrays keep seeing the same nodes.
+     */
+    private void index(Node node, long start) {
+        if (myIndexed == myNodes.length) {
+            myNodes = Arrays.copyOf(myNodes, 2 * myIndexed);
+            myStarts = Arrays.copyOf(myStarts, 2 * myIndexed);
+        }
+        myNodes[myIndexed] = node;
+        myStarts[myIndexed] = start;
+        myIndexed++;
+    }
+
+    /**
+     * Spliterator over bases [index, fence) of the first count indexed
+     * nodes. A range covering more than one node is split at the start of
+     * its middle node; a range inside one node is split in half by index.
+     */
+    private static class NodeSpliterator implements Spliterator.OfInt {
+        private final Node[] myNodes;
+        private final long[] myStarts;
+        private final int myCount;
+        private long myIndex;
+        private final long myFence;
+        private int myPos;      // node holding myIndex, or an earlier one
+
+        NodeSpliterator(Node[] nodes, long[] starts, int count, long index, long fence, int pos) {
+            myNodes = nodes;
+            myStarts = starts;
+            myCount = count;
+            myIndex = index;
+            myFence = fence;
+            myPos = pos;
+        }
 
+        @Override
+        public OfInt trySplit() {
+            if (myFence - myIndex < 2) {
+                return null;
+            }
+            int first = findNode(myStarts, myCount, myIndex);
+            int last = findNode(myStarts, myCount, myFence - 1);
+            long mid;
+            if (last > first) {
+                mid = myStarts[(first + last + 1) >>> 1];
+            }
+            else {
+                mid = (myIndex + myFence) >>> 1;
+            }
+            NodeSpliterator prefix = new NodeSpliterator(myNodes, myStarts, myCount, myIndex, mid, first);
+            myIndex = mid;
+            myPos = findNode(myStarts, myCount, mid);
+            return prefix;
+        }
 
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (myIndex >= myFence) {
+                return false;
+            }
+            while (myIndex >= myStarts[myPos] + myNodes[myPos].length) {
+                myPos++;
+            }
+            action.accept(myNodes[myPos].charAt((int) (myIndex - myStarts[myPos])));
+            myIndex++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (myIndex < myFence) {
+                Node node = myNodes[myPos];
+                long end = Math.min(myFence, myStarts[myPos] + node.length);
+                for (int k = (int) (myIndex - myStarts[myPos]); myIndex < end; k++, myIndex++) {
+                    action.accept(node.charAt(k));
+                }
+                myPos++;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return myFence - myIndex;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Reads the first count indexed nodes. The index arrays are only ever
+     * written past the nodes already indexed, so a window never sees later
+     * appends. baseAt is a binary search that writes nothing, so any number
+     * of threads can read one window; cursor() gives one reader a position
+     * of its own, from which moving to a neighboring node is O(1).
+     */
+    private static class Window implements StrandView.Bases {
+        private final Node[] myNodes;
+        private final long[] myStarts;
+        private final int myCount;
+
+        Window(Node[] nodes, long[] starts, int count) {
+            myNodes = nodes;
+            myStarts = starts;
+            myCount = count;
+        }
+
+        @Override
+        public char baseAt(long index) {
+            int pos = findNode(myStarts, myCount, index);
+            return myNodes[pos].charAt((int) (index - myStarts[pos]));
+        }
+
+        @Override
+        public StrandView.Bases cursor() {
+            return new StrandView.Bases() {
+                private int myPos;
+
+                @Override
+                public char baseAt(long index) {
+                    int pos = myPos;
+                    if (!contains(pos, index)) {
+                        if (pos + 1 < myCount && contains(pos + 1, index)) {
+                            pos++;
+                        }
+                        else if (pos > 0 && contains(pos - 1, index)) {
+                            pos--;
+                        }
+                        else {
+                            pos = findNode(myStarts, myCount, index);
+                        }
+                        myPos = pos;
+                    }
+                    return myNodes[pos].charAt((int) (index - myStarts[pos]));
+                }
+            };
+        }
+
+        private boolean contains(int pos, long index) {
+            return myStarts[pos] <= index && index < myStarts[pos] + myNodes[pos].length;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/**
+ * Lookup tables shared by the strand implementations for working with
+ * single bases.
+ */
+public final class Nucleotides {
+
+	private static final char[] COMPLEMENT = new char[128];
+	static {
+		for (int k = 0; k < COMPLEMENT.length; k++) {
+			COMPLEMENT[k] = (char) k;
+		}
+		String from = "acgtACGT";
+		String to = "tgcaTGCA";
+		for (int k = 0; k < from.length(); k++) {
+			COMPLEMENT[from.charAt(k)] = to.charAt(k);
+		}
+	}
+
+	private Nucleotides() {
+	}
+
+	/**
+	 * Return the Watson-Crick complement of a base, a<->t and c<->g, keeping
+	 * its case. Any other character is its own complement.
+	 * @param ch is the base complemented
+	 * @return the complement of ch
+	 */
+	public static char complement(char ch) {
+		return ch < COMPLEMENT.length ? COMPLEMENT[ch] : ch;
+	}
+
+	/**
+	 * Reverse complement dna in a single pass into a char array.
+	 * @param dna is the sequence reverse complemented
+	 * @return the reverse complement of dna
+	 */
+	public static String reverseComplement(CharSequence dna) {
+		char[] chars = new char[dna.length()];
+		for (int k = 0, j = chars.length - 1; j >= 0; k++, j--) {
+			chars[j] = complement(dna.charAt(k));
+		}
+		return new String(chars);
+	}
+}
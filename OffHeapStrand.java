@@ -0,0 +1,483 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Implementation of IDnaStrand whose bases live outside the Java heap, so
+ * a strand of billions of bases adds nothing to the work of the garbage
+ * collector. Bases are 2-bit packed, with the codes PackedStrand uses,
+ * into direct ByteBuffers. The first is sized to the bases it is given,
+ * at least MIN_SEGMENT_BYTES, and doubles as the strand grows until it
+ * holds SEGMENT_BYTES; after that a new segment of SEGMENT_BYTES is
+ * allocated when the last one is full, and bases are never copied again.
+ * <P>
+ * append, charAt, reverse, reverseComplement and cutAndSplice all work
+ * on the packed bases, the results are OffHeapStrands too. Ranges of
+ * another off-heap strand are copied a byte, four bases, at a time, with
+ * bulk ByteBuffer copies where source and destination line up on a byte;
+ * reverse and reverseComplement reverse four bases at a time through a
+ * table. Only toString(), getChars, and forEachChunk a few thousand bases
+ * at a time, decode bases onto the heap.
+ * <P>
+ * The memory is released by close(), or by the garbage collector if a
+ * strand is never closed. A closed strand throws IllegalStateException.
+ * Only a, c, g, t (either case) can be stored, toString() returns lower
+ * case.
+ */
+public class OffHeapStrand implements IDnaStrand, AutoCloseable {
+
+	/** Bytes in each full direct buffer, 4 bases per byte. */
+	public static final int SEGMENT_BYTES = 1 << 20;
+
+	/** Bytes in the smallest first buffer. */
+	public static final int MIN_SEGMENT_BYTES = 64;
+
+	private static final int SEGMENT_SHIFT = 22;	// log2 of bases per segment
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+	private static final int CHUNK_SIZE = 4096;		// bases per forEachChunk chunk
+	private static final char[] BASES = {'a', 'c', 'g', 't'};
+	private static final int[] CODES = new int[128];
+	private static final byte[] REVERSED = new byte[256];	// a byte's 4 codes in reverse order
+	static {
+		Arrays.fill(CODES, -1);
+		for (int k = 0; k < BASES.length; k++) {
+			CODES[BASES[k]] = k;
+			CODES[Character.toUpperCase(BASES[k])] = k;
+		}
+		for (int b = 0; b < REVERSED.length; b++) {
+			REVERSED[b] = (byte) ((b >>> 6) | ((b >>> 2) & 0x0c) | ((b << 2) & 0x30) | (b << 6));
+		}
+	}
+
+	private ByteBuffer[] mySegments;
+	private int mySegmentCount;
+	private long myCapacity;		// bases the segments hold
+	private long mySize;
+	private int myAppends;
+	private boolean myClosed;
+
+	public OffHeapStrand() {
+		this("");
+	}
+
+	/**
+	 * Create a strand representing s.
+	 *
+	 * @param s
+	 *            is the source of cgat data for this strand
+	 * @throws IllegalArgumentException if s contains a character that is
+	 *            not a DNA base
+	 */
+	public OffHeapStrand(String s) {
+		initialize(s);
+	}
+
+	/**
+	 * Release the memory this strand holds and start again with source.
+	 * A closed strand can be initialized again.
+	 */
+	@Override
+	public void initialize(String source) {
+		free();
+		mySegments = new ByteBuffer[4];
+		mySegmentCount = 0;
+		mySize = 0;
+		myClosed = false;
+		append(source);
+		myAppends = 0;
+	}
+
+	@Override
+	public long size() {
+		return mySize;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if dna contains a character that is
+	 *            not a DNA base, this strand is unchanged in that case
+	 */
+	@Override
+	public IDnaStrand append(String dna) {
+		checkOpen();
+		for (int k = 0; k < dna.length(); k++) {
+			code(dna.charAt(k));
+		}
+		ensure(dna.length());
+		for (int k = 0; k < dna.length(); k++) {
+			put(code(dna.charAt(k)));
+		}
+		myAppends++;
+		return this;
+	}
+
+	/**
+	 * Append bases [start, end) of other, a byte at a time, as one
+	 * append.
+	 * @param other is the strand copied from, may be this strand
+	 * @param start is the first base copied
+	 * @param end is one past the last base copied
+	 * @return this strand after the data has been added
+	 * @throws IndexOutOfBoundsException if the range is not inside other
+	 */
+	public OffHeapStrand append(OffHeapStrand other, long start, long end) {
+		checkOpen();
+		other.checkOpen();
+		if (start < 0 || end > other.mySize || start > end) {
+			throw new IndexOutOfBoundsException("range " + start + " to " + end + " size " + other.mySize);
+		}
+		copy(other, start, end);
+		myAppends++;
+		return this;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return charAt((long) index);
+	}
+
+	@Override
+	public char charAt(long index) {
+		checkOpen();
+		if (index < 0 || index >= mySize) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + mySize);
+		}
+		return BASES[code(index)];
+	}
+
+	@Override
+	public String toString() {
+		checkOpen();
+		char[] chars = new char[(int) mySize];
+		for (int k = 0; k < chars.length; k++) {
+			chars[k] = BASES[code(k)];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Decodes CHUNK_SIZE bases at a time into one reused buffer.
+	 */
+	@Override
+	public void forEachChunk(Consumer<CharSequence> action) {
+		forEachChunk(0, mySize, action);
+	}
+
+	@Override
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		checkOpen();
+		Objects.checkFromToIndex(start, end, mySize);
+		char[] buffer = new char[(int) Math.min(CHUNK_SIZE, end - start)];
+		for (long from = start; from < end; from += CHUNK_SIZE) {
+			int length = (int) Math.min(CHUNK_SIZE, end - from);
+			for (int k = 0; k < length; k++) {
+				buffer[k] = BASES[code(from + k)];
+			}
+			action.accept(CharBuffer.wrap(buffer, 0, length));
+		}
+	}
+
+	/**
+	 * Decodes straight into dst, with no intermediate chunks.
+	 */
+	@Override
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		checkOpen();
+		Objects.checkFromToIndex(start, end, mySize);
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		for (long k = start; k < end; k++) {
+			dst[dstBegin++] = BASES[code(k)];
+		}
+	}
+
+	/**
+	 * A view would stop working when this strand is closed, so the range
+	 * is copied, a byte at a time, into a new off-heap strand.
+	 */
+	@Override
+	public IDnaStrand subStrand(long start, long end) {
+		OffHeapStrand ret = new OffHeapStrand().append(this, start, end);
+		ret.myAppends = 0;
+		return ret;
+	}
+
+	/**
+	 * A new off-heap strand, copied four bases at a time from the end of
+	 * this one.
+	 */
+	@Override
+	public IDnaStrand reverse() {
+		return reverseCodes(0);
+	}
+
+	/**
+	 * The complement of a base is 3 minus its code, one xor per four
+	 * bases.
+	 */
+	@Override
+	public IDnaStrand reverseComplement() {
+		return reverseCodes(3);
+	}
+
+	/**
+	 * Each byte of the result is the four bases of this strand that end
+	 * where the bases before it begin, reversed through REVERSED.
+	 */
+	private OffHeapStrand reverseCodes(int xor) {
+		checkOpen();
+		OffHeapStrand ret = new OffHeapStrand();
+		ret.ensure(mySize);
+		int mask = xor * 0x55;
+		long k = mySize;
+		for (; k >= 4; k -= 4) {
+			ret.putByte(REVERSED[packed(k - 4) & 0xff] ^ mask);
+		}
+		while (k > 0) {
+			ret.put(code(--k) ^ xor);
+		}
+		return ret;
+	}
+
+	/**
+	 * Copy bases [start, end) of other to the end of this strand. Bases
+	 * are put one at a time until this strand ends on a byte, then four at
+	 * a time, a whole run of bytes with one bulk put where other's bases
+	 * start on a byte too.
+	 */
+	private void copy(OffHeapStrand other, long start, long end) {
+		ensure(end - start);
+		while (start < end && (mySize & 3) != 0) {
+			put(other.code(start++));
+		}
+		if ((start & 3) == 0) {
+			while (end - start >= 4) {
+				int from = (int) ((start & SEGMENT_MASK) >>> 2);
+				int to = (int) ((mySize & SEGMENT_MASK) >>> 2);
+				int bytes = (int) Math.min((end - start) >>> 2,
+					Math.min(SEGMENT_BYTES - from, SEGMENT_BYTES - to));
+				segment(mySize).put(to, other.segment(start), from, bytes);
+				start += 4L * bytes;
+				mySize += 4L * bytes;
+			}
+		}
+		else {
+			for (; end - start >= 4; start += 4) {
+				putByte(other.packed(start));
+			}
+		}
+		while (start < end) {
+			put(other.code(start++));
+		}
+	}
+
+	/**
+	 * Sites are found with an EnzymeMatcher reading the packed bases, and
+	 * each fragment is copied segment to segment into the result, followed
+	 * by the splicee, which is packed off-heap once. Nothing is decoded
+	 * onto the heap.
+	 */
+	@Override
+	public IDnaStrand cutAndSplice(String enzyme, String splicee) {
+		checkOpen();
+		EnzymeMatcher matcher = new EnzymeMatcher(enzyme);
+		OffHeapStrand ret = new OffHeapStrand();
+		try (OffHeapStrand splice = new OffHeapStrand(splicee)) {
+			int m = matcher.length();
+			int state = 0;
+			long from = 0;
+			for (long k = 0; k < mySize; k++) {
+				state = matcher.next(state, BASES[code(k)]);
+				if (state == m) {
+					ret.append(this, from, k + 1 - m);
+					ret.append(splice, 0, splice.mySize);
+					from = k + 1;
+					state = 0;
+				}
+			}
+			ret.append(this, from, mySize);
+		}
+		return ret;
+	}
+
+	@Override
+	public IDnaStrand getInstance(String source) {
+		return new OffHeapStrand(source);
+	}
+
+	@Override
+	public int getAppendCount() {
+		return myAppends;
+	}
+
+	/**
+	 * Storage is the off-heap bytes allocated, none of it on the heap.
+	 */
+	@Override
+	public StrandStats stats() {
+		return new StrandStats(mySize, myCapacity / 4, mySegmentCount,
+			myAppends, 0, 0, 0);
+	}
+
+	/**
+	 * Release the off-heap memory now rather than when this strand is
+	 * collected. Closing twice does nothing.
+	 */
+	@Override
+	public void close() {
+		free();
+		myClosed = true;
+		mySize = 0;
+	}
+
+	private void free() {
+		if (mySegments != null) {
+			for (int k = 0; k < mySegmentCount; k++) {
+				release(mySegments[k]);
+				mySegments[k] = null;
+			}
+			mySegmentCount = 0;
+			myCapacity = 0;
+		}
+	}
+
+	private void checkOpen() {
+		if (myClosed) {
+			throw new IllegalStateException("strand is closed");
+		}
+	}
+
+	/**
+	 * @return the 2-bit code of base ch
+	 * @throws IllegalArgumentException if ch is not a DNA base
+	 */
+	private static int code(char ch) {
+		int code = ch < CODES.length ? CODES[ch] : -1;
+		if (code < 0) {
+			throw new IllegalArgumentException("not a DNA base: " + ch);
+		}
+		return code;
+	}
+
+	/**
+	 * @return the segment holding the base at index
+	 */
+	private ByteBuffer segment(long index) {
+		return mySegments[(int) (index >>> SEGMENT_SHIFT)];
+	}
+
+	/**
+	 * @return the code of the base at index, which must be in range
+	 */
+	private int code(long index) {
+		long local = index & SEGMENT_MASK;
+		return (segment(index).get((int) (local >>> 2)) >>> ((local & 3) << 1)) & 3;
+	}
+
+	/**
+	 * @return the four bases from start, which must all be in range,
+	 *         packed into a byte as they would be if start were on a byte
+	 */
+	private int packed(long start) {
+		long local = start & SEGMENT_MASK;
+		int low = segment(start).get((int) (local >>> 2)) & 0xff;
+		int shift = (int) (local & 3) << 1;
+		if (shift == 0) {
+			return low;
+		}
+		long next = start + 4 - (local & 3);
+		int high = segment(next).get((int) ((next & SEGMENT_MASK) >>> 2)) & 0xff;
+		return ((low >>> shift) | (high << (8 - shift))) & 0xff;
+	}
+
+	/**
+	 * Add a base code at the end; segments are zeroed when allocated, so
+	 * or-ing the bits in is enough.
+	 */
+	private void put(int code) {
+		ensure(1);
+		long local = mySize & SEGMENT_MASK;
+		ByteBuffer segment = segment(mySize);
+		int at = (int) (local >>> 2);
+		segment.put(at, (byte) (segment.get(at) | (code << ((local & 3) << 1))));
+		mySize++;
+	}
+
+	/**
+	 * Add four bases, packed into a byte, at the end, which must be on a
+	 * byte.
+	 */
+	private void putByte(int packed) {
+		ensure(4);
+		segment(mySize).put((int) ((mySize & SEGMENT_MASK) >>> 2), (byte) packed);
+		mySize += 4;
+	}
+
+	/**
+	 * Make room for count more bases. Only the first segment is ever
+	 * smaller than SEGMENT_BYTES: it is sized to what is needed and
+	 * copied into one twice as big, or as big as needed, until it is
+	 * full size; segments after it are allocated full size.
+	 */
+	private void ensure(long count) {
+		long needed = mySize + count;
+		if (needed <= myCapacity) {
+			return;
+		}
+		if (mySegmentCount == 1 && mySegments[0].capacity() < SEGMENT_BYTES) {
+			ByteBuffer old = mySegments[0];
+			int bytes = (int) Math.min(SEGMENT_BYTES, Math.max(2L * old.capacity(), (needed + 3) >>> 2));
+			ByteBuffer grown = ByteBuffer.allocateDirect(bytes);
+			grown.put(0, old, 0, old.capacity());
+			release(old);
+			mySegments[0] = grown;
+			myCapacity = 4L * bytes;
+		}
+		while (needed > myCapacity) {
+			if (mySegmentCount == mySegments.length) {
+				mySegments = Arrays.copyOf(mySegments, 2 * mySegmentCount);
+			}
+			int bytes = SEGMENT_BYTES;
+			if (mySegmentCount == 0) {
+				bytes = (int) Math.min(SEGMENT_BYTES, Math.max(MIN_SEGMENT_BYTES, (needed + 3) >>> 2));
+			}
+			mySegments[mySegmentCount++] = ByteBuffer.allocateDirect(bytes);
+			myCapacity += 4L * bytes;
+		}
+	}
+
+	// sun.misc.Unsafe.invokeCleaner frees a direct buffer at once; if it is
+	// not available the buffer is freed when it is collected
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private static void release(ByteBuffer buffer) {
+		if (INVOKE_CLEANER != null) {
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			}
+			catch (ReflectiveOperationException e) {
+				// left for the collector
+			}
+		}
+	}
+}
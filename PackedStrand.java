@@ -0,0 +1,291 @@
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Compact implementation of IDnaStrand. Each base is stored in 2 bits,
+ * 32 bases to a long, so a strand takes a quarter of a byte per base
+ * instead of one or two bytes per char. Base k lives in word k/32 at bit
+ * 2*(k%32); bits past the last base are always zero.
+ * <P>
+ * Only a, c, g, t (either case) can be stored, toString() returns lower
+ * case.
+ */
+public class PackedStrand implements IDnaStrand {
+
+	private static final char[] BASES = {'a', 'c', 'g', 't'};
+	private static final int[] CODES = new int[128];
+	private static final int CHUNK_SIZE = 4096;	// bases per forEachChunk chunk
+	static {
+		Arrays.fill(CODES, -1);
+		for (int k = 0; k < BASES.length; k++) {
+			CODES[BASES[k]] = k;
+			CODES[Character.toUpperCase(BASES[k])] = k;
+		}
+	}
+
+	private long[] myWords;
+	private long mySize;
+	private int myAppends;
+	private long myMaterializations;	// toString() calls, if StrandStats.ENABLED
+
+	public PackedStrand() {
+		this("");
+	}
+
+	/**
+	 * Create a strand representing s.
+	 *
+	 * @param s
+	 *            is the source of cgat data for this strand
+	 * @throws IllegalArgumentException if s contains a character that is
+	 *            not a DNA base
+	 */
+	public PackedStrand(String s) {
+		initialize(s);
+	}
+
+	@Override
+	public void initialize(String source) {
+		myWords = new long[words(source.length())];
+		mySize = 0;
+		pack(source);
+		myAppends = 0;
+	}
+
+	@Override
+	public long size() {
+		return mySize;
+	}
+
+	/**
+	 * Pack dna onto the end of this strand. The word array grows by
+	 * doubling, so append is amortized O(1) per base.
+	 *
+	 * @param dna
+	 *            is the String appended to this strand
+	 * @throws IllegalArgumentException if dna contains a character that is
+	 *            not a DNA base, this strand is unchanged in that case
+	 */
+	@Override
+	public IDnaStrand append(String dna) {
+		long needed = words(mySize + dna.length());
+		if (needed > myWords.length) {
+			long grown = Math.max(needed, 2L * myWords.length);
+			myWords = Arrays.copyOf(myWords, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+		}
+		pack(dna);
+		myAppends++;
+		return this;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return charAt((long) index);
+	}
+
+	/**
+	 * Any index up to the 2^36 bases a long[] can hold.
+	 */
+	@Override
+	public char charAt(long index) {
+		if (index < 0 || index >= mySize) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + mySize);
+		}
+		return BASES[(int) (myWords[(int) (index >>> 5)] >>> ((index & 31) << 1)) & 3];
+	}
+
+	@Override
+	public String toString() {
+		if (StrandStats.ENABLED) {
+			myMaterializations++;
+		}
+		char[] chars = new char[(int) mySize];
+		decode(0, chars, 0, chars.length);
+		return new String(chars);
+	}
+
+	/**
+	 * Reads a word at a time, shifting the next base out of the word.
+	 */
+	@Override
+	public PrimitiveIterator.OfInt charIterator() {
+		return new PrimitiveIterator.OfInt() {
+			private long myIndex = 0;
+			private long myWord;
+
+			@Override
+			public boolean hasNext() {
+				return myIndex < mySize;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				if ((myIndex & 31) == 0) {
+					myWord = myWords[(int) (myIndex >>> 5)];
+				}
+				int code = (int) myWord & 3;
+				myWord >>>= 2;
+				myIndex++;
+				return BASES[code];
+			}
+		};
+	}
+
+	/**
+	 * Splits by index range over the words as they are now; appends never
+	 * change the bits of bases already stored.
+	 */
+	@Override
+	public Spliterator.OfInt charSpliterator() {
+		long[] words = myWords;
+		return new RangeSpliterator(i -> BASES[(int) (words[(int) (i >>> 5)] >>> ((i & 31) << 1)) & 3],
+				0, mySize);
+	}
+
+	/**
+	 * Decodes CHUNK_SIZE bases at a time into one reused buffer.
+	 */
+	@Override
+	public void forEachChunk(Consumer<CharSequence> action) {
+		forEachChunk(0, mySize, action);
+	}
+
+	@Override
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		Objects.checkFromToIndex(start, end, mySize);
+		char[] buffer = new char[(int) Math.min(CHUNK_SIZE, end - start)];
+		for (long from = start; from < end; from += CHUNK_SIZE) {
+			int length = (int) Math.min(CHUNK_SIZE, end - from);
+			decode(from, buffer, 0, length);
+			action.accept(CharBuffer.wrap(buffer, 0, length));
+		}
+	}
+
+	/**
+	 * Decodes straight into dst, with no intermediate chunks.
+	 */
+	@Override
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, mySize);
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		decode(start, dst, dstBegin, (int) (end - start));
+	}
+
+	/**
+	 * An O(1) view of the range, reading the words as they are now, as
+	 * charSpliterator does.
+	 */
+	@Override
+	public IDnaStrand subStrand(long start, long end) {
+		Objects.checkFromToIndex(start, end, mySize);
+		long[] words = myWords;
+		return new StrandView(this, i -> BASES[(int) (words[(int) (i >>> 5)] >>> ((i & 31) << 1)) & 3],
+				start, end - start, false, false);
+	}
+
+	@Override
+	public IDnaStrand reverse() {
+		return reverseWords(0L);
+	}
+
+	/**
+	 * The codes are chosen so that the complement of a base is 3 minus its
+	 * code, so a whole word of bases is complemented with one xor.
+	 */
+	@Override
+	public IDnaStrand reverseComplement() {
+		return reverseWords(-1L);
+	}
+
+	/**
+	 * Reverse a word at a time: the bases inside each word are reversed
+	 * with shifts and masks, the words are stored in reverse order, and
+	 * the whole array is shifted down over the padding that was at the end
+	 * of the last word.
+	 * @param xor is applied to every word before it is reversed
+	 */
+	private PackedStrand reverseWords(long xor) {
+		int n = words(mySize);
+		long[] rev = new long[n];
+		for (int k = 0; k < n; k++) {
+			rev[n - 1 - k] = reverseWord(myWords[k] ^ xor);
+		}
+		int shift = (int) (((long) n * 32 - mySize) << 1);
+		if (shift > 0) {
+			for (int k = 0; k < n - 1; k++) {
+				rev[k] = (rev[k] >>> shift) | (rev[k + 1] << (64 - shift));
+			}
+			rev[n - 1] >>>= shift;
+		}
+		PackedStrand ps = new PackedStrand();
+		ps.myWords = rev;
+		ps.mySize = mySize;
+		return ps;
+	}
+
+	@Override
+	public IDnaStrand getInstance(String source) {
+		return new PackedStrand(source);
+	}
+
+	@Override
+	public StrandStats stats() {
+		return new StrandStats(mySize, 8L * myWords.length, 1, myAppends, 0, 0, myMaterializations);
+	}
+
+	@Override
+	public int getAppendCount() {
+		return myAppends;
+	}
+
+	private void pack(String dna) {
+		long pos = mySize;
+		for (int k = 0; k < dna.length(); k++, pos++) {
+			char ch = dna.charAt(k);
+			int code = ch < CODES.length ? CODES[ch] : -1;
+			if (code < 0) {
+				for (long p = mySize; p < pos; p++) {
+					myWords[(int) (p >>> 5)] &= ~(3L << ((p & 31) << 1));
+				}
+				throw new IllegalArgumentException("not a DNA base: " + ch);
+			}
+			myWords[(int) (pos >>> 5)] |= (long) code << ((pos & 31) << 1);
+		}
+		mySize = pos;
+	}
+
+	/**
+	 * Decode length bases starting at start into dst from dstBegin.
+	 */
+	private void decode(long start, char[] dst, int dstBegin, int length) {
+		for (int k = 0; k < length; k++) {
+			long pos = start + k;
+			dst[dstBegin + k] = BASES[(int) (myWords[(int) (pos >>> 5)] >>> ((pos & 31) << 1)) & 3];
+		}
+	}
+
+	/**
+	 * @return the number of words needed to hold bases bases
+	 */
+	private static int words(long bases) {
+		return (int) ((bases + 31) >>> 5);
+	}
+
+	/**
+	 * Reverse the order of the 32 2-bit bases in a word: swap neighboring
+	 * bases, then neighboring pairs, then reverse the bytes.
+	 */
+	private static long reverseWord(long w) {
+		w = ((w >>> 2) & 0x3333333333333333L) | ((w & 0x3333333333333333L) << 2);
+		w = ((w >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((w & 0x0F0F0F0F0F0F0F0FL) << 4);
+		return Long.reverseBytes(w);
+	}
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join cut and splice for large strands. The source is searched in
+ * chunks concurrently; each chunk reads enzyme.length()-1 bases past its
+ * end so that a site crossing a chunk boundary is found exactly once, by
+ * the chunk it starts in. The sites found are then filtered, left to
+ * right, to the same non-overlapping sites the sequential search finds,
+ * the fragments between them are cut out concurrently, and the result is
+ * assembled in order. The result is identical to
+ * IDnaStrand.cutAndSplice, including size() and getAppendCount().
+ */
+public class ParallelSplicer {
+
+	/** Sources shorter than this are cut and spliced sequentially. */
+	public static final long PARALLEL_THRESHOLD = 1 << 20;
+
+	/** Bases searched, or fragments cut, by one task without forking. */
+	public static final int CHUNK_SIZE = 1 << 16;
+
+	private ParallelSplicer() {
+	}
+
+	/**
+	 * Cut source at every occurrence of enzyme and splice in splicee, in
+	 * parallel if source has at least PARALLEL_THRESHOLD bases.
+	 * @param source is the strand cut, left unchanged
+	 * @param enzyme is the pattern/strand searched for and replaced
+	 * @param splicee is the pattern/strand replacing each occurrence of enzyme
+	 * @return the new strand, of the same class as source
+	 */
+	public static IDnaStrand cutAndSplice(IDnaStrand source, String enzyme, String splicee) {
+		return cutAndSplice(source, enzyme, splicee, PARALLEL_THRESHOLD, CHUNK_SIZE);
+	}
+
+	/**
+	 * Cut source at every occurrence of enzyme and splice in splicee, in
+	 * parallel if source has at least threshold bases. The parallel search
+	 * works on source.toString(), so a source too long for a String is cut
+	 * sequentially.
+	 * @param source is the strand cut, left unchanged
+	 * @param enzyme is the pattern/strand searched for and replaced
+	 * @param splicee is the pattern/strand replacing each occurrence of enzyme
+	 * @param threshold is the smallest source cut in parallel
+	 * @param chunkSize is the number of bases searched by one task
+	 * @return the new strand, of the same class as source
+	 */
+	public static IDnaStrand cutAndSplice(IDnaStrand source, String enzyme, String splicee,
+			long threshold, int chunkSize) {
+		if (source.size() < threshold || source.size() > Integer.MAX_VALUE - 8) {
+			return source.cutAndSplice(enzyme, splicee);
+		}
+		EnzymeMatcher matcher = new EnzymeMatcher(enzyme);
+		String text = source.toString();
+		int[] sites = nonOverlapping(new Search(matcher, text, 0, text.length(), chunkSize).invoke(), enzyme.length());
+
+		String[] fragments = new String[sites.length + 1];
+		new Cut(text, sites, enzyme.length(), fragments, 0, fragments.length, chunkSize).invoke();
+
+		IDnaStrand ret = source.getInstance("");
+		for (int k = 0; k < sites.length; k++) {
+			ret.append(fragments[k]);
+			ret.append(splicee);
+		}
+		ret.append(fragments[sites.length]);
+		return ret;
+	}
+
+	/**
+	 * Keep, left to right, each site that starts at or after the end of the
+	 * last site kept; this is what a left-to-right search that restarts
+	 * after every match finds.
+	 */
+	private static int[] nonOverlapping(int[] sites, int length) {
+		int kept = 0;
+		int end = 0;
+		for (int site : sites) {
+			if (site >= end) {
+				sites[kept++] = site;
+				end = site + length;
+			}
+		}
+		return Arrays.copyOf(sites, kept);
+	}
+
+	/**
+	 * Finds the start of every occurrence, overlapping or not, that starts
+	 * in [lo, hi), in increasing order.
+	 */
+	private static class Search extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final EnzymeMatcher myMatcher;
+		private final String myText;
+		private final int myLo, myHi, myChunkSize;
+
+		Search(EnzymeMatcher matcher, String text, int lo, int hi, int chunkSize) {
+			myMatcher = matcher;
+			myText = text;
+			myLo = lo;
+			myHi = hi;
+			myChunkSize = chunkSize;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (myHi - myLo > myChunkSize) {
+				int mid = (myLo + myHi) >>> 1;
+				Search right = new Search(myMatcher, myText, mid, myHi, myChunkSize);
+				right.fork();
+				int[] left = new Search(myMatcher, myText, myLo, mid, myChunkSize).compute();
+				int[] rest = right.join();
+				int[] all = Arrays.copyOf(left, left.length + rest.length);
+				System.arraycopy(rest, 0, all, left.length, rest.length);
+				return all;
+			}
+			int m = myMatcher.length();
+			int end = (int) Math.min(myText.length(), (long) myHi + m - 1);
+			int[] sites = new int[8];
+			int count = 0;
+			int state = 0;
+			for (int k = myLo; k < end; k++) {
+				state = myMatcher.next(state, myText.charAt(k));
+				if (state == m) {
+					if (count == sites.length) {
+						sites = Arrays.copyOf(sites, 2 * count);
+					}
+					sites[count++] = k + 1 - m;
+				}
+			}
+			return Arrays.copyOf(sites, count);
+		}
+	}
+
+	/**
+	 * Cuts fragments [lo, hi) out of the text: fragment k runs from the end
+	 * of site k-1, or the start of the text, to the start of site k, or the
+	 * end of the text.
+	 */
+	private static class Cut extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final String myText;
+		private final int[] mySites;
+		private final int myLength;
+		private final String[] myFragments;
+		private final int myLo, myHi, myChunkSize;
+
+		Cut(String text, int[] sites, int length, String[] fragments, int lo, int hi, int chunkSize) {
+			myText = text;
+			mySites = sites;
+			myLength = length;
+			myFragments = fragments;
+			myLo = lo;
+			myHi = hi;
+			myChunkSize = chunkSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (myHi - myLo > 1 && start(myHi - 1) - start(myLo) > myChunkSize) {
+				int mid = (myLo + myHi) >>> 1;
+				invokeAll(new Cut(myText, mySites, myLength, myFragments, myLo, mid, myChunkSize),
+						new Cut(myText, mySites, myLength, myFragments, mid, myHi, myChunkSize));
+				return;
+			}
+			for (int k = myLo; k < myHi; k++) {
+				int end = k < mySites.length ? mySites[k] : myText.length();
+				myFragments[k] = myText.substring(start(k), end);
+			}
+		}
+
+		private int start(int k) {
+			return k == 0 ? 0 : mySites[k - 1] + myLength;
+		}
+	}
+}
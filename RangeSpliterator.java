@@ -0,0 +1,64 @@
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Spliterator over an index range of bases read through a random access
+ * function. Splits in half by index, so it suits array-backed storage and
+ * is safe to use in parallel as long as the function is safe to call from
+ * several threads at once.
+ */
+public class RangeSpliterator implements Spliterator.OfInt {
+
+	private final StrandView.Bases myBases;
+	private long myIndex;
+	private final long myFence;
+
+	/**
+	 * Create a spliterator over bases [index, fence).
+	 * @param bases reads the base at an index
+	 * @param index is the first index visited
+	 * @param fence is one past the last index visited
+	 */
+	RangeSpliterator(StrandView.Bases bases, long index, long fence) {
+		myBases = bases;
+		myIndex = index;
+		myFence = fence;
+	}
+
+	@Override
+	public OfInt trySplit() {
+		long mid = (myIndex + myFence) >>> 1;
+		if (mid <= myIndex) {
+			return null;
+		}
+		RangeSpliterator prefix = new RangeSpliterator(myBases, myIndex, mid);
+		myIndex = mid;
+		return prefix;
+	}
+
+	@Override
+	public boolean tryAdvance(IntConsumer action) {
+		if (myIndex >= myFence) {
+			return false;
+		}
+		action.accept(myBases.baseAt(myIndex++));
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(IntConsumer action) {
+		for (; myIndex < myFence; myIndex++) {
+			action.accept(myBases.baseAt(myIndex));
+		}
+	}
+
+	@Override
+	public long estimateSize() {
+		return myFence - myIndex;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+	}
+}
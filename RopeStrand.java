@@ -0,0 +1,549 @@
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Implementation of IDnaStrand as a rope: an AVL-balanced binary tree
+ * whose leaves are slices of Strings, or of a chunk: a StringBuilder of
+ * LEAF_SIZE chars that short appends are copied into and that is only
+ * ever added to past the slices already in a tree. So trees are never
+ * changed once built, and strands, splits and concatenations share
+ * subtrees freely. append, charAt, splitting at an index and
+ * concatenating two strands are all O(log n); an append also copies its
+ * own bases if it is short, and nothing else.
+ */
+public class RopeStrand implements IDnaStrand {
+
+	// chars in a chunk; appends shorter than this are copied into one
+	// rather than added as a leaf of their own
+	private static final int LEAF_SIZE = 1024;
+
+	private static class Rope {
+		final CharSequence chars;	// leaf text, a String or a chunk, null for inner nodes
+		final int offset;
+		final Rope left, right;
+		final long size;
+		final int height;
+
+		Rope(CharSequence s, int start, int end) {
+			chars = s;
+			offset = start;
+			size = end - start;
+			left = right = null;
+			height = 0;
+		}
+
+		Rope(Rope l, Rope r) {
+			chars = null;
+			offset = 0;
+			left = l;
+			right = r;
+			size = l.size + r.size;
+			height = 1 + Math.max(l.height, r.height);
+		}
+
+		boolean isLeaf() {
+			return chars != null;
+		}
+	}
+
+	private static final int NODE_BYTES = 40;	// estimated heap bytes of one Rope
+
+	private Rope myRoot;		// null when the strand is empty
+	private StringBuilder myChunk;	// chars of the last leaf if it is this strand's chunk
+	private int myAppends;
+	private long myMaterializations;	// toString() calls, if StrandStats.ENABLED
+
+	public RopeStrand() {
+		this("");
+	}
+
+	/**
+	 * Create a strand representing s. No error checking is done to see if s
+	 * represents valid genomic/DNA data.
+	 *
+	 * @param s
+	 *            is the source of cgat data for this strand
+	 */
+	public RopeStrand(String s) {
+		initialize(s);
+	}
+
+	private RopeStrand(Rope root, int appends) {
+		myRoot = root;
+		myAppends = appends;
+	}
+
+	@Override
+	public void initialize(String source) {
+		myRoot = leaf(source, 0, source.length());
+		myChunk = null;
+		myAppends = 0;
+	}
+
+	@Override
+	public long size() {
+		return myRoot == null ? 0 : myRoot.size;
+	}
+
+	/**
+	 * Short dna fills the chunk of the last leaf, with the right spine
+	 * copied to lengthen that leaf, and whatever does not fit starts a new
+	 * chunk joined on the right as a new leaf, so chunks are always filled
+	 * to LEAF_SIZE. Anything longer becomes a leaf of its own with no copy.
+	 * Either way O(log n), plus the length of dna if it is copied: the
+	 * bases already in the chunk never are.
+	 */
+	@Override
+	public IDnaStrand append(String dna) {
+		if (dna.isEmpty()) {
+			// nothing to add
+		}
+		else if (dna.length() < LEAF_SIZE) {
+			int from = 0;
+			if (myChunk != null && myChunk.length() < LEAF_SIZE) {
+				from = Math.min(dna.length(), LEAF_SIZE - myChunk.length());
+				myChunk.append(dna, 0, from);
+				myRoot = extendLast(myRoot, myChunk.length());
+			}
+			if (from < dna.length()) {
+				StringBuilder chunk = new StringBuilder(LEAF_SIZE).append(dna, from, dna.length());
+				myRoot = join(myRoot, leaf(chunk, 0, chunk.length()));
+				myChunk = chunk;
+			}
+		}
+		else {
+			myRoot = join(myRoot, leaf(dna, 0, dna.length()));
+			myChunk = null;
+		}
+		myAppends++;
+		return this;
+	}
+
+	/**
+	 * Append all of other to this strand in O(log n), sharing other's
+	 * tree. Other is unchanged.
+	 * @param other is the strand appended to this strand
+	 * @return this strand after the data has been added
+	 */
+	public RopeStrand append(RopeStrand other) {
+		myRoot = join(myRoot, other.myRoot);
+		if (other.myRoot != null) {
+			myChunk = null;
+		}
+		myAppends++;
+		return this;
+	}
+
+	/**
+	 * Split this strand in O(log n), leaving it unchanged.
+	 * @param index is where to split, 0 <= index <= size()
+	 * @return two strands, the bases before index and the bases from
+	 *         index on
+	 * @throws IndexOutOfBoundsException if index < 0 or index > size()
+	 */
+	public RopeStrand[] split(long index) {
+		if (index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + size());
+		}
+		Rope[] parts = split(myRoot, index);
+		return new RopeStrand[] {new RopeStrand(parts[0], 0), new RopeStrand(parts[1], 0)};
+	}
+
+	@Override
+	public char charAt(int index) {
+		return charAt((long) index);
+	}
+
+	@Override
+	public char charAt(long index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + size());
+		}
+		return charAt(myRoot, index);
+	}
+
+	private static char charAt(Rope t, long i) {
+		while (!t.isLeaf()) {
+			if (i < t.left.size) {
+				t = t.left;
+			}
+			else {
+				i -= t.left.size;
+				t = t.right;
+			}
+		}
+		return t.chars.charAt(t.offset + (int) i);
+	}
+
+	@Override
+	public String toString() {
+		if (StrandStats.ENABLED) {
+			myMaterializations++;
+		}
+		StringBuilder ret = new StringBuilder((int) size());
+		appendLeaves(myRoot, ret);
+		return ret.toString();
+	}
+
+	@Override
+	public void forEachChunk(Consumer<CharSequence> action) {
+		for (Rope t : leaves(myRoot)) {
+			action.accept(CharBuffer.wrap(t.chars, t.offset, t.offset + (int) t.size));
+		}
+	}
+
+	/**
+	 * Walks the leaves of the tree split out for the range, O(log n) to
+	 * find the first one.
+	 */
+	@Override
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		Objects.checkFromToIndex(start, end, size());
+		for (Rope t : leaves(slice(myRoot, start, end))) {
+			action.accept(CharBuffer.wrap(t.chars, t.offset, t.offset + (int) t.size));
+		}
+	}
+
+	@Override
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, size());
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		for (Rope t : leaves(slice(myRoot, start, end))) {
+			if (t.chars instanceof String) {
+				((String) t.chars).getChars(t.offset, t.offset + (int) t.size, dst, dstBegin);
+			}
+			else {
+				((StringBuilder) t.chars).getChars(t.offset, t.offset + (int) t.size, dst, dstBegin);
+			}
+			dstBegin += (int) t.size;
+		}
+	}
+
+	/**
+	 * O(log n): the range is split out of this strand's tree and shares
+	 * its leaves.
+	 */
+	@Override
+	public IDnaStrand subStrand(long start, long end) {
+		Objects.checkFromToIndex(start, end, size());
+		return new RopeStrand(slice(myRoot, start, end), 0);
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt charIterator() {
+		Iterator<Rope> leaves = leaves(myRoot).iterator();
+		return new PrimitiveIterator.OfInt() {
+			private Rope myLeaf;
+			private int myLocal;
+
+			@Override
+			public boolean hasNext() {
+				while ((myLeaf == null || myLocal >= myLeaf.size) && leaves.hasNext()) {
+					myLeaf = leaves.next();
+					myLocal = 0;
+				}
+				return myLeaf != null && myLocal < myLeaf.size;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return myLeaf.chars.charAt(myLeaf.offset + myLocal++);
+			}
+		};
+	}
+
+	/**
+	 * Splits the tree into its left and right subtrees, and a single leaf
+	 * into two slices.
+	 */
+	@Override
+	public Spliterator.OfInt charSpliterator() {
+		return new RopeSpliterator(myRoot);
+	}
+
+	/**
+	 * Trees never change, so the reverse is an O(1) view that reads this
+	 * tree backwards, O(log n) per base.
+	 */
+	@Override
+	public IDnaStrand reverse() {
+		Rope root = myRoot;
+		return new StrandView(this, i -> charAt(root, i), size(), true);
+	}
+
+	@Override
+	public IDnaStrand reverseComplement() {
+		Rope root = myRoot;
+		return new StrandView(this, i -> charAt(root, i), size(), true, true);
+	}
+
+	/**
+	 * Cut and splice by tree surgery: every fragment is split out of this
+	 * strand's tree and joined to the result next to a single splicee leaf
+	 * that is shared by every break. Costs O(n) to find the sites and
+	 * O(log n) per break, independent of the length of splicee.
+	 */
+	@Override
+	public IDnaStrand cutAndSplice(String enzyme, String splicee) {
+		EnzymeMatcher matcher = new EnzymeMatcher(enzyme);
+		Rope splice = leaf(splicee, 0, splicee.length());
+		Rope ret = null;
+		Rope rest = myRoot;
+		long consumed = 0;
+		long pos = 0;
+		int breaks = 0;
+		int state = 0;
+		for (Rope t : leaves(myRoot)) {
+			for (int k = t.offset; k < t.offset + t.size; k++, pos++) {
+				state = matcher.next(state, t.chars.charAt(k));
+				if (state == matcher.length()) {
+					Rope[] parts = split(rest, pos + 1 - state - consumed);
+					ret = join(join(ret, parts[0]), splice);
+					rest = split(parts[1], state)[1];
+					consumed = pos + 1;
+					breaks++;
+					state = 0;
+				}
+			}
+		}
+		return new RopeStrand(join(ret, rest), 2 * breaks + 1);
+	}
+
+	@Override
+	public IDnaStrand getInstance(String source) {
+		return new RopeStrand(source);
+	}
+
+	/**
+	 * Walks the tree. Storage counts the bases in the leaves, the unused
+	 * part of the chunk being filled and every tree node. A leaf that is a
+	 * slice of a String or chunk is counted at its own length, however
+	 * much of the String other strands share.
+	 */
+	@Override
+	public StrandStats stats() {
+		long slack = myChunk == null ? 0 : myChunk.capacity() - myChunk.length();
+		return new StrandStats(size(), size() + slack + NODE_BYTES * nodes(myRoot), leafCount(myRoot),
+			myAppends, 0, 0, myMaterializations);
+	}
+
+	private static long nodes(Rope t) {
+		return t == null ? 0 : 1 + nodes(t.left) + nodes(t.right);
+	}
+
+	private static long leafCount(Rope t) {
+		if (t == null) {
+			return 0;
+		}
+		return t.isLeaf() ? 1 : leafCount(t.left) + leafCount(t.right);
+	}
+
+	@Override
+	public int getAppendCount() {
+		return myAppends;
+	}
+
+	private static Rope leaf(CharSequence s, int start, int end) {
+		return start == end ? null : new Rope(s, start, end);
+	}
+
+	private static int height(Rope t) {
+		return t == null ? -1 : t.height;
+	}
+
+	/**
+	 * Concatenate two balanced trees into one balanced tree, descending
+	 * the spine of the taller tree to a subtree of about the other's
+	 * height. O(difference in heights).
+	 */
+	private static Rope join(Rope a, Rope b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if (a.height > b.height + 1) {
+			return balance(a.left, join(a.right, b));
+		}
+		if (b.height > a.height + 1) {
+			return balance(join(a, b.left), b.right);
+		}
+		return new Rope(a, b);
+	}
+
+	/**
+	 * Build an inner node from subtrees whose heights differ by at most
+	 * two, rotating once or twice to restore the AVL property.
+	 */
+	private static Rope balance(Rope l, Rope r) {
+		if (height(l) > height(r) + 1) {
+			if (height(l.left) >= height(l.right)) {
+				return new Rope(l.left, new Rope(l.right, r));
+			}
+			return new Rope(new Rope(l.left, l.right.left), new Rope(l.right.right, r));
+		}
+		if (height(r) > height(l) + 1) {
+			if (height(r.right) >= height(r.left)) {
+				return new Rope(new Rope(l, r.left), r.right);
+			}
+			return new Rope(new Rope(l, r.left.left), new Rope(r.left.right, r.right));
+		}
+		return new Rope(l, r);
+	}
+
+	/**
+	 * @return the trees holding the first index bases of t and the rest,
+	 *         either may be null
+	 */
+	private static Rope[] split(Rope t, long index) {
+		if (t == null) {
+			return new Rope[] {null, null};
+		}
+		if (t.isLeaf()) {
+			int mid = t.offset + (int) index;
+			return new Rope[] {leaf(t.chars, t.offset, mid), leaf(t.chars, mid, t.offset + (int) t.size)};
+		}
+		if (index < t.left.size) {
+			Rope[] parts = split(t.left, index);
+			return new Rope[] {parts[0], join(parts[1], t.right)};
+		}
+		Rope[] parts = split(t.right, index - t.left.size);
+		return new Rope[] {join(t.left, parts[0]), parts[1]};
+	}
+
+	/**
+	 * @return the tree holding bases [start, end) of t
+	 */
+	private static Rope slice(Rope t, long start, long end) {
+		return split(split(t, end)[0], start)[1];
+	}
+
+	/**
+	 * @return t with its last leaf, a slice of a chunk, lengthened to end
+	 *         at end, copying only the right spine
+	 */
+	private static Rope extendLast(Rope t, int end) {
+		if (t.isLeaf()) {
+			return new Rope(t.chars, t.offset, end);
+		}
+		return new Rope(t.left, extendLast(t.right, end));
+	}
+
+	private static void appendLeaves(Rope t, StringBuilder sb) {
+		for (Rope leaf : leaves(t)) {
+			sb.append(leaf.chars, leaf.offset, leaf.offset + (int) leaf.size);
+		}
+	}
+
+	/**
+	 * @return the leaves of t, left to right
+	 */
+	private static Iterable<Rope> leaves(Rope t) {
+		return () -> new LeafIterator(t);
+	}
+
+	/**
+	 * Spliterator over the bases of a tree. Until the first base is read
+	 * it can be split by handing off the left subtree, or the first half
+	 * of a leaf.
+	 */
+	private static class RopeSpliterator implements Spliterator.OfInt {
+		private Rope myTree;			// not yet started, null once walking
+		private Iterator<Rope> myLeaves;
+		private Rope myLeaf;
+		private int myLocal;
+		private long myRemaining;
+
+		RopeSpliterator(Rope t) {
+			myTree = t;
+			myRemaining = t == null ? 0 : t.size;
+		}
+
+		@Override
+		public OfInt trySplit() {
+			if (myTree == null || myTree.size < 2) {
+				return null;
+			}
+			Rope prefix;
+			if (myTree.isLeaf()) {
+				int mid = myTree.offset + (int) (myTree.size / 2);
+				prefix = leaf(myTree.chars, myTree.offset, mid);
+				myTree = leaf(myTree.chars, mid, myTree.offset + (int) myTree.size);
+			}
+			else {
+				prefix = myTree.left;
+				myTree = myTree.right;
+			}
+			myRemaining -= prefix.size;
+			return new RopeSpliterator(prefix);
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (myRemaining == 0) {
+				return false;
+			}
+			if (myLeaves == null) {
+				myLeaves = leaves(myTree).iterator();
+				myTree = null;
+			}
+			while (myLeaf == null || myLocal >= myLeaf.size) {
+				myLeaf = myLeaves.next();
+				myLocal = 0;
+			}
+			action.accept(myLeaf.chars.charAt(myLeaf.offset + myLocal++));
+			myRemaining--;
+			return true;
+		}
+
+		@Override
+		public long estimateSize() {
+			return myRemaining;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+
+	/**
+	 * In-order walk over the leaves of a tree with an explicit stack, so
+	 * the walk is O(height) space however many leaves there are.
+	 */
+	private static class LeafIterator implements Iterator<Rope> {
+		private final ArrayDeque<Rope> myStack = new ArrayDeque<>();
+
+		LeafIterator(Rope t) {
+			if (t != null) {
+				myStack.push(t);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !myStack.isEmpty();
+		}
+
+		@Override
+		public Rope next() {
+			Rope r = myStack.pop();
+			while (!r.isLeaf()) {
+				myStack.push(r.right);
+				r = r.left;
+			}
+			return r;
+		}
+	}
+}
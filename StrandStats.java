@@ -0,0 +1,89 @@
+/**
+ * A snapshot of the size, storage and usage counters of one strand, as
+ * returned by IDnaStrand.stats(). Storage is an estimate of the heap bytes
+ * the strand holds, assuming compressed references and compact (one byte
+ * per char) Strings. Fragments are the separately allocated pieces the
+ * bases are stored in: nodes of a LinkStrand, leaves of a RopeStrand, 1
+ * for the array-backed strands.
+ * <P>
+ * The counters, cursor hits and misses in charAt and materializations
+ * (building every base into one String or strand), are only kept when the
+ * JVM runs with -Dstrand.stats=true. ENABLED is a constant, so when it is
+ * false the JIT drops the counting code and the counters stay 0.
+ */
+public final class StrandStats {
+
+	/** True if strands keep their counters. */
+	public static final boolean ENABLED = Boolean.getBoolean("strand.stats");
+
+	private final long mySize;
+	private final long myStorageBytes;
+	private final long myFragments;
+	private final int myAppends;
+	private final long myCursorHits;
+	private final long myCursorMisses;
+	private final long myMaterializations;
+
+	/**
+	 * Create a snapshot.
+	 * @param size is the number of bases
+	 * @param storageBytes is the estimated heap bytes held
+	 * @param fragments is the number of pieces the bases are stored in
+	 * @param appends is the number of calls to append
+	 * @param cursorHits is the number of charAt calls served by the cursor
+	 * @param cursorMisses is the number of charAt calls that had to search
+	 * @param materializations is the number of full copies built
+	 */
+	public StrandStats(long size, long storageBytes, long fragments, int appends,
+			long cursorHits, long cursorMisses, long materializations) {
+		mySize = size;
+		myStorageBytes = storageBytes;
+		myFragments = fragments;
+		myAppends = appends;
+		myCursorHits = cursorHits;
+		myCursorMisses = cursorMisses;
+		myMaterializations = materializations;
+	}
+
+	public long getSize() {
+		return mySize;
+	}
+
+	public long getStorageBytes() {
+		return myStorageBytes;
+	}
+
+	public long getFragments() {
+		return myFragments;
+	}
+
+	/**
+	 * @return the average number of bases per fragment
+	 */
+	public double getAverageFragment() {
+		return myFragments == 0 ? 0 : (double) mySize / myFragments;
+	}
+
+	public int getAppends() {
+		return myAppends;
+	}
+
+	public long getCursorHits() {
+		return myCursorHits;
+	}
+
+	public long getCursorMisses() {
+		return myCursorMisses;
+	}
+
+	public long getMaterializations() {
+		return myMaterializations;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("size=%d storage=%d fragments=%d avg=%.1f appends=%d hits=%d misses=%d materializations=%d",
+			mySize, myStorageBytes, myFragments, getAverageFragment(), myAppends,
+			myCursorHits, myCursorMisses, myMaterializations);
+	}
+}
@@ -0,0 +1,329 @@
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A lightweight strand that reads its bases, in reverse order and
+ * optionally complemented, straight out of another strand's storage
+ * instead of copying them. reverse() on the other implementations returns
+ * one of these in O(1), and reverse() or reverseComplement() on a view is
+ * another O(1) view of the same bases.
+ * <P>
+ * subStrand() on the implementations is a view too, of a range of bases
+ * in their order. A view only ever reads the length() bases from its
+ * start in the storage it was given. Every implementation only adds data
+ * past the end of its storage on append and replaces its storage on
+ * initialize, so those bases never change and the original and the view
+ * are independent: changing either one never changes the other. The
+ * view is materialized into a strand of the original's class the first
+ * time it is changed itself, and toString() builds the String once and
+ * then reads from it.
+ */
+public class StrandView implements IDnaStrand {
+
+	/**
+	 * Random access to a run of bases that will not change while any view
+	 * holds it. baseAt may be called from any number of threads at once.
+	 */
+	interface Bases {
+		char baseAt(long index);
+
+		/**
+		 * @return bases to read these through from one thread, with a
+		 *         cursor of their own if that makes nearby reads faster
+		 */
+		default Bases cursor() {
+			return this;
+		}
+	}
+
+	private static final int CHUNK_SIZE = 4096;	// bases per forEachChunk chunk
+
+	private final IDnaStrand myFactory;
+	private final Bases myBases;	// kept after toString(), so racing reads never miss both
+	private final long myStart;
+	private final long myLength;
+	private final boolean myReversed;
+	private final boolean myComplement;
+	private String myString;		// set once toString() has been called
+	private IDnaStrand myStrand;	// set once this view has been changed
+	private long myMaterializations;	// if StrandStats.ENABLED
+
+	/**
+	 * Create a view of the first length bases read through bases.
+	 * @param factory is a strand of the class used if the view is changed
+	 * @param bases reads the bases being viewed
+	 * @param length is the number of bases viewed
+	 * @param reversed is true to view the bases in reverse order
+	 */
+	StrandView(IDnaStrand factory, Bases bases, long length, boolean reversed) {
+		this(factory, bases, length, reversed, false);
+	}
+
+	/**
+	 * Create a view of the first length bases read through bases.
+	 * @param factory is a strand of the class used if the view is changed
+	 * @param bases reads the bases being viewed
+	 * @param length is the number of bases viewed
+	 * @param reversed is true to view the bases in reverse order
+	 * @param complement is true to view the complement of each base
+	 */
+	StrandView(IDnaStrand factory, Bases bases, long length, boolean reversed, boolean complement) {
+		this(factory, bases, 0, length, reversed, complement);
+	}
+
+	/**
+	 * Create a view of the length bases from start read through bases.
+	 * @param factory is a strand of the class used if the view is changed
+	 * @param bases reads the bases being viewed
+	 * @param start is the index in bases of the first base viewed
+	 * @param length is the number of bases viewed
+	 * @param reversed is true to view the bases in reverse order
+	 * @param complement is true to view the complement of each base
+	 */
+	StrandView(IDnaStrand factory, Bases bases, long start, long length, boolean reversed, boolean complement) {
+		myFactory = factory;
+		myBases = bases;
+		myStart = start;
+		myLength = length;
+		myReversed = reversed;
+		myComplement = complement;
+	}
+
+	@Override
+	public long size() {
+		return myStrand != null ? myStrand.size() : myLength;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return charAt((long) index);
+	}
+
+	@Override
+	public char charAt(long index) {
+		if (myStrand != null) {
+			return myStrand.charAt(index);
+		}
+		if (index < 0 || index >= myLength) {
+			throw new IndexOutOfBoundsException("index " + index + " size " + myLength);
+		}
+		String s = myString;
+		if (s != null) {
+			return s.charAt((int) index);
+		}
+		return base(myBases, index);
+	}
+
+	@Override
+	public String toString() {
+		if (myStrand != null) {
+			return myStrand.toString();
+		}
+		String s = myString;
+		if (s == null) {
+			Bases bases = myBases.cursor();
+			char[] chars = new char[(int) myLength];
+			for (int k = 0; k < chars.length; k++) {
+				chars[k] = base(bases, k);
+			}
+			s = new String(chars);
+			myString = s;
+			if (StrandStats.ENABLED) {
+				myMaterializations++;
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Reversing a view that has not been changed is another O(1) view of
+	 * the same bases.
+	 */
+	@Override
+	public IDnaStrand reverse() {
+		if (myStrand != null) {
+			return myStrand.reverse();
+		}
+		if (myString != null) {
+			String s = myString;
+			return new StrandView(myFactory, i -> s.charAt((int) i), myLength, true);
+		}
+		return new StrandView(myFactory, myBases, myStart, myLength, !myReversed, myComplement);
+	}
+
+	@Override
+	public IDnaStrand reverseComplement() {
+		if (myStrand != null) {
+			return myStrand.reverseComplement();
+		}
+		if (myString != null) {
+			String s = myString;
+			return new StrandView(myFactory, i -> s.charAt((int) i), myLength, true, true);
+		}
+		return new StrandView(myFactory, myBases, myStart, myLength, !myReversed, !myComplement);
+	}
+
+	/**
+	 * A view of a view that has not been changed is another view of the
+	 * same bases, of the range that holds bases [start, end) of this one.
+	 */
+	@Override
+	public IDnaStrand subStrand(long start, long end) {
+		if (myStrand != null) {
+			return myStrand.subStrand(start, end);
+		}
+		Objects.checkFromToIndex(start, end, myLength);
+		if (myString != null) {
+			String s = myString;
+			return new StrandView(myFactory, i -> s.charAt((int) i), start, end - start, false, false);
+		}
+		long from = myReversed ? myStart + myLength - end : myStart + start;
+		return new StrandView(myFactory, myBases, from, end - start, myReversed, myComplement);
+	}
+
+	/**
+	 * The bases being viewed may be read through a cursor that is not safe
+	 * to share between threads, so a view that is split builds its String
+	 * once and splits that.
+	 */
+	@Override
+	public Spliterator.OfInt charSpliterator() {
+		if (myStrand != null) {
+			return myStrand.charSpliterator();
+		}
+		return toString().chars().spliterator();
+	}
+
+	/**
+	 * Decodes CHUNK_SIZE bases at a time into one reused buffer, so a view
+	 * too long for a String can still be cut and spliced.
+	 */
+	@Override
+	public void forEachChunk(Consumer<CharSequence> action) {
+		if (myStrand != null) {
+			myStrand.forEachChunk(action);
+			return;
+		}
+		if (myString != null) {
+			action.accept(myString);
+			return;
+		}
+		forEachChunk(0, myLength, action);
+	}
+
+	@Override
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		if (myStrand != null) {
+			myStrand.forEachChunk(start, end, action);
+			return;
+		}
+		Objects.checkFromToIndex(start, end, myLength);
+		if (myString != null) {
+			action.accept(CharBuffer.wrap(myString, (int) start, (int) end));
+			return;
+		}
+		Bases bases = myBases.cursor();
+		char[] buffer = new char[(int) Math.min(CHUNK_SIZE, end - start)];
+		for (long from = start; from < end; from += CHUNK_SIZE) {
+			int length = (int) Math.min(CHUNK_SIZE, end - from);
+			for (int k = 0; k < length; k++) {
+				buffer[k] = base(bases, from + k);
+			}
+			action.accept(CharBuffer.wrap(buffer, 0, length));
+		}
+	}
+
+	/**
+	 * Reads the bases straight into dst, with no intermediate chunks.
+	 */
+	@Override
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		if (myStrand != null) {
+			myStrand.getChars(start, end, dst, dstBegin);
+			return;
+		}
+		Objects.checkFromToIndex(start, end, myLength);
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		if (myString != null) {
+			myString.getChars((int) start, (int) end, dst, dstBegin);
+			return;
+		}
+		Bases bases = myBases.cursor();
+		for (long k = start; k < end; k++) {
+			dst[dstBegin++] = base(bases, k);
+		}
+	}
+
+	@Override
+	public void initialize(String source) {
+		myStrand = myFactory.getInstance(source);
+		myString = null;
+	}
+
+	@Override
+	public IDnaStrand append(String dna) {
+		materialize().append(dna);
+		return this;
+	}
+
+	@Override
+	public IDnaStrand cutAndSplice(String enzyme, String splicee) {
+		if (myStrand != null) {
+			return myStrand.cutAndSplice(enzyme, splicee);
+		}
+		return IDnaStrand.super.cutAndSplice(enzyme, splicee);
+	}
+
+	@Override
+	public IDnaStrand getInstance(String source) {
+		return myFactory.getInstance(source);
+	}
+
+	@Override
+	public int getAppendCount() {
+		return myStrand != null ? myStrand.getAppendCount() : 0;
+	}
+
+	@Override
+	public String strandInfo() {
+		return getClass().getName() + " of " + myFactory.getClass().getName() + " " + stats();
+	}
+
+	/**
+	 * Once changed, the strand the view was materialized into, with this
+	 * view's materializations added. Before that, the view holds no bases
+	 * of its own, only its String once toString() has been called.
+	 */
+	@Override
+	public StrandStats stats() {
+		if (myStrand != null) {
+			StrandStats s = myStrand.stats();
+			return new StrandStats(s.getSize(), s.getStorageBytes(), s.getFragments(), s.getAppends(),
+				s.getCursorHits(), s.getCursorMisses(), s.getMaterializations() + myMaterializations);
+		}
+		return new StrandStats(myLength, myString == null ? 0 : myLength, myString == null ? 0 : 1,
+			0, 0, 0, myMaterializations);
+	}
+
+	/**
+	 * @return the base at index in the order this view presents them, read
+	 *         through bases
+	 */
+	private char base(Bases bases, long index) {
+		char ch = bases.baseAt(myStart + (myReversed ? myLength - 1 - index : index));
+		return myComplement ? Nucleotides.complement(ch) : ch;
+	}
+
+	private IDnaStrand materialize() {
+		if (myStrand == null) {
+			myStrand = myFactory.getInstance(toString());
+			myString = null;
+			if (StrandStats.ENABLED) {
+				myMaterializations++;
+			}
+		}
+		return myStrand;
+	}
+}
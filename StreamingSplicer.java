@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cut and splice from one channel to another without building either
+ * strand in memory. The source is read BUFFER_SIZE bytes at a time, in the
+ * format GenomeLoader reads: FASTA header lines are skipped and bytes that
+ * are not bases are dropped. The recombinant is written as lower case
+ * bases, with no line breaks, and the enzyme is matched in lower case.
+ * A splicee given as a String is lower-cased once up front; one given as
+ * a file is written as it is.
+ * <P>
+ * Sites are found with an EnzymeMatcher, so a site split across two reads
+ * is found like any other. The bases held back because they may start a
+ * site are always the first <code>state</code> bases of the enzyme, so
+ * nothing but the automaton state is carried from one read to the next and
+ * memory is bounded by the buffers however large the source or the
+ * recombinant is. Sites are the same left-to-right, non-overlapping sites
+ * IDnaStrand.cutAndSplice finds.
+ * <P>
+ * A splicee shorter than TRANSFER_SIZE is copied into the output buffer.
+ * A longer one is written straight from one direct buffer, or, if it was
+ * given as a file, with FileChannel.transferTo, which lets the operating
+ * system copy it without passing it through the Java heap.
+ */
+public class StreamingSplicer {
+
+	/** Bytes read, and written, at once. */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/** Splicees at least this long are written by their own transfer. */
+	public static final int TRANSFER_SIZE = 1 << 12;
+
+	private final EnzymeMatcher myMatcher;
+	private final byte[] myEnzyme;
+	private final ByteBuffer mySplicee;		// null if the splicee is transferred from a file
+	private final FileChannel mySpliceeFile;
+	private final long mySpliceeSize;
+
+	/**
+	 * Create a splicer for an enzyme and a splicee.
+	 * @param enzyme is the pattern searched for and replaced
+	 * @param splicee is written, in lower case, in place of every
+	 *        occurrence of enzyme
+	 * @throws IllegalArgumentException if enzyme is empty
+	 */
+	public StreamingSplicer(String enzyme, String splicee) {
+		myMatcher = new EnzymeMatcher(enzyme.toLowerCase());
+		myEnzyme = myMatcher.getEnzyme().getBytes(StandardCharsets.ISO_8859_1);
+		byte[] bytes = splicee.toLowerCase().getBytes(StandardCharsets.ISO_8859_1);
+		mySplicee = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+		mySpliceeFile = null;
+		mySpliceeSize = bytes.length;
+	}
+
+	/**
+	 * Create a splicer whose splicee is the whole content of a file,
+	 * written as is. The file must stay open while this splicer is used.
+	 * @param enzyme is the pattern searched for and replaced
+	 * @param splicee holds the bases written in place of every occurrence
+	 * @throws IOException if splicee cannot be read
+	 * @throws IllegalArgumentException if enzyme is empty
+	 */
+	public StreamingSplicer(String enzyme, FileChannel splicee) throws IOException {
+		myMatcher = new EnzymeMatcher(enzyme.toLowerCase());
+		myEnzyme = myMatcher.getEnzyme().getBytes(StandardCharsets.ISO_8859_1);
+		long size = splicee.size();
+		if (size < TRANSFER_SIZE) {
+			ByteBuffer bytes = ByteBuffer.allocateDirect((int) size);
+			while (bytes.hasRemaining() && splicee.read(bytes, bytes.position()) >= 0) {
+			}
+			mySplicee = bytes.flip();
+			mySpliceeFile = null;
+			mySpliceeSize = mySplicee.remaining();
+		}
+		else {
+			mySplicee = null;
+			mySpliceeFile = splicee;
+			mySpliceeSize = size;
+		}
+	}
+
+	/**
+	 * Cut and splice the DNA in one file into another file, replacing it.
+	 * @param source is the file read
+	 * @param target is the file written
+	 * @param enzyme is the pattern searched for and replaced
+	 * @param splicee is written, in lower case, in place of every
+	 *        occurrence of enzyme
+	 * @return the number of sites cut
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static long splice(Path source, Path target, String enzyme, String splicee) throws IOException {
+		try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return new StreamingSplicer(enzyme, splicee).splice(in, out);
+		}
+	}
+
+	/**
+	 * Read DNA from in until it ends and write the recombinant to out.
+	 * Neither channel is closed. Safe to call from several threads at
+	 * once with different channels.
+	 * @param in is the source read
+	 * @param out receives the recombinant
+	 * @return the number of sites cut
+	 * @throws IOException if in or out fails
+	 */
+	public long splice(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+		ByteBuffer output = ByteBuffer.allocate(Math.max(BUFFER_SIZE, myEnzyme.length + 1));
+		int m = myEnzyme.length;
+		int state = 0;
+		long sites = 0;
+		boolean lineStart = true;
+		boolean header = false;
+		while (in.read(input) >= 0) {
+			input.flip();
+			while (input.hasRemaining()) {
+				byte b = input.get();
+				if (b == '\n') {
+					header = false;
+					lineStart = true;
+					continue;
+				}
+				if (lineStart && b == '>') {
+					header = true;
+				}
+				lineStart = false;
+				char ch = GenomeLoader.BASE[b & 0xFF];
+				if (ch == 0 || header) {
+					continue;
+				}
+				int next = myMatcher.next(state, ch);
+				if (next == m) {
+					sites++;
+					writeSplicee(output, out);
+					state = 0;
+					continue;
+				}
+				// the held bases plus ch are enzyme[0..state) + ch, of which
+				// the last next are held back, the rest are written
+				if (output.remaining() <= m) {
+					drain(output, out);
+				}
+				if (next == 0) {
+					output.put(myEnzyme, 0, state);
+					output.put((byte) ch);
+				}
+				else {
+					output.put(myEnzyme, 0, state + 1 - next);
+				}
+				state = next;
+			}
+			input.clear();
+		}
+		if (output.remaining() < state) {
+			drain(output, out);
+		}
+		output.put(myEnzyme, 0, state);
+		drain(output, out);
+		return sites;
+	}
+
+	private void writeSplicee(ByteBuffer output, WritableByteChannel out) throws IOException {
+		if (mySplicee != null && mySpliceeSize < TRANSFER_SIZE) {
+			if (output.remaining() < mySpliceeSize) {
+				drain(output, out);
+			}
+			output.put(mySplicee.duplicate());
+			return;
+		}
+		drain(output, out);
+		if (mySplicee != null) {
+			ByteBuffer splicee = mySplicee.duplicate();
+			while (splicee.hasRemaining()) {
+				out.write(splicee);
+			}
+		}
+		else {
+			for (long pos = 0; pos < mySpliceeSize; ) {
+				long n = mySpliceeFile.transferTo(pos, mySpliceeSize - pos, out);
+				if (n <= 0) {
+					throw new IOException("splicee file shorter than " + mySpliceeSize + " bytes");
+				}
+				pos += n;
+			}
+		}
+	}
+
+	static void drain(ByteBuffer output, WritableByteChannel out) throws IOException {
+		output.flip();
+		while (output.hasRemaining()) {
+			out.write(output);
+		}
+		output.clear();
+	}
+}
@@ -1,3 +1,10 @@
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
 /**
  * Simple but implementation of IDnaStrand. This
  * implementation uses StringBuilders to represent genomic/DNA data.
@@ -7,6 +14,7 @@ public class StringBuilderStrand implements IDnaStrand {
 	
 	private StringBuilder myInfo;
 	private int myAppends;
+	private long myMaterializations;	// toString() calls, if StrandStats.ENABLED
 
 	public StringBuilderStrand(){
 		this("");
@@ -46,9 +54,20 @@ public class StringBuilderStrand implements IDnaStrand {
 
 	@Override
 	public String toString() {
+		if (StrandStats.ENABLED) {
+			myMaterializations++;
+		}
 		return myInfo.toString();
 	}
 
+	/**
+	 * Storage is the capacity of myInfo, which may be larger than size().
+	 */
+	@Override
+	public StrandStats stats() {
+		return new StrandStats(size(), myInfo.capacity(), 1, myAppends, 0, 0, myMaterializations);
+	}
+
 	/**
 	 * Simply append a strand of dna data to this strand. No error checking is
 	 * done.
@@ -62,12 +81,18 @@ public class StringBuilderStrand implements IDnaStrand {
 		return this;
 	}
 
+	/**
+	 * myInfo is only ever appended to, so the reverse is an O(1) view that
+	 * reads its current characters backwards rather than a copy.
+	 */
 	public IDnaStrand reverse() {
-		StringBuilder copy = new StringBuilder(myInfo);
-		StringBuilderStrand ss = new StringBuilderStrand("replace");
-		copy.reverse();
-		ss.myInfo = copy;
-		return ss;
+		StringBuilder info = myInfo;
+		return new StrandView(this, i -> info.charAt((int) i), info.length(), true);
+	}
+
+	@Override
+	public IDnaStrand reverseComplement() {
+		return new StringBuilderStrand(Nucleotides.reverseComplement(myInfo));
 	}
 
 	@Override
@@ -78,6 +103,49 @@ public class StringBuilderStrand implements IDnaStrand {
 	public char charAt(int index) {
 		return myInfo.charAt(index);
 	}
+
+	@Override
+	public PrimitiveIterator.OfInt charIterator() {
+		return myInfo.chars().iterator();
+	}
+
+	@Override
+	public Spliterator.OfInt charSpliterator() {
+		return myInfo.chars().spliterator();
+	}
+
+	@Override
+	public IntStream chars() {
+		return myInfo.chars();
+	}
+
+	@Override
+	public void forEachChunk(Consumer<CharSequence> action) {
+		action.accept(myInfo);
+	}
+
+	@Override
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		Objects.checkFromToIndex(start, end, size());
+		action.accept(CharBuffer.wrap(myInfo, (int) start, (int) end));
+	}
+
+	@Override
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, size());
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		myInfo.getChars((int) start, (int) end, dst, dstBegin);
+	}
+
+	/**
+	 * An O(1) view of the range of myInfo, like reverse().
+	 */
+	@Override
+	public IDnaStrand subStrand(long start, long end) {
+		Objects.checkFromToIndex(start, end, size());
+		StringBuilder info = myInfo;
+		return new StrandView(this, i -> info.charAt((int) i), start, end - start, false, false);
+	}
 	
 	@Override
 	public IDnaStrand getInstance(String source) {
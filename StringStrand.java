@@ -1,3 +1,10 @@
+import java.nio.CharBuffer;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
 /**
  * Simple but somewhat efficient implementation of IDnaStrand. \ This
  * implementation uses StringBuilders to represent genomic/DNA data.
@@ -67,12 +74,19 @@ public class StringStrand implements IDnaStrand {
 		return this;
 	}
 
+	/**
+	 * Strings never change, so the reverse is an O(1) view reading myInfo
+	 * backwards rather than a copy.
+	 */
 	@Override 
 	public IDnaStrand reverse() {
-		StringBuilder copy = new StringBuilder(myInfo);
-		copy.reverse();
-		StringStrand ss = new StringStrand(copy.toString());
-		return ss;
+		String info = myInfo;
+		return new StrandView(this, i -> info.charAt((int) i), info.length(), true);
+	}
+	
+	@Override 
+	public IDnaStrand reverseComplement() {
+		return new StringStrand(Nucleotides.reverseComplement(myInfo));
 	}
 	
 	@Override 
@@ -86,8 +100,59 @@ public class StringStrand implements IDnaStrand {
 		return myAppends;
 	}
 	
+	/**
+	 * toString() returns myInfo itself, so nothing is ever materialized.
+	 */
+	@Override
+	public StrandStats stats() {
+		return new StrandStats(size(), myInfo.length(), 1, myAppends, 0, 0, 0);
+	}
+
 	@Override 
 	public char charAt(int index){
 		return myInfo.charAt(index);
 	}
+
+	@Override 
+	public PrimitiveIterator.OfInt charIterator() {
+		return myInfo.chars().iterator();
+	}
+
+	@Override 
+	public Spliterator.OfInt charSpliterator() {
+		return myInfo.chars().spliterator();
+	}
+
+	@Override 
+	public IntStream chars() {
+		return myInfo.chars();
+	}
+
+	@Override 
+	public void forEachChunk(Consumer<CharSequence> action) {
+		action.accept(myInfo);
+	}
+
+	@Override 
+	public void forEachChunk(long start, long end, Consumer<CharSequence> action) {
+		Objects.checkFromToIndex(start, end, size());
+		action.accept(CharBuffer.wrap(myInfo, (int) start, (int) end));
+	}
+
+	@Override 
+	public void getChars(long start, long end, char[] dst, int dstBegin) {
+		Objects.checkFromToIndex(start, end, size());
+		Objects.checkFromIndexSize(dstBegin, end - start, dst.length);
+		myInfo.getChars((int) start, (int) end, dst, dstBegin);
+	}
+
+	/**
+	 * An O(1) view of the range of myInfo, like reverse().
+	 */
+	@Override 
+	public IDnaStrand subStrand(long start, long end) {
+		Objects.checkFromToIndex(start, end, size());
+		String info = myInfo;
+		return new StrandView(this, i -> info.charAt((int) i), start, end - start, false, false);
+	}
 }
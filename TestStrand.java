@@ -1,8 +1,15 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
 import java.util.Random;
 
 /**
@@ -35,6 +42,43 @@ public class TestStrand {
 		return new StringStrand(s);
         //return new LinkStrand(s);
 		//return new StringBuilderStrand(s);
+		//return new PackedStrand(s);
+		//return new RopeStrand(s);
+		//return new OffHeapStrand(s);
+	}
+
+	/**
+	 * Return one strand of every implementation, for tests of code each
+	 * implementation has its own version of.
+	 *
+	 * @param s
+	 *            is the string modeled by each strand
+	 * @return a strand of each IDnaStrand implementation
+	 */
+	private IDnaStrand[] getAllStrands(String s) {
+		return new IDnaStrand[] {new StringStrand(s), new StringBuilderStrand(s), new LinkStrand(s),
+			new PackedStrand(s), new RopeStrand(s), new OffHeapStrand(s)};
+	}
+
+	/**
+	 * Append short pieces, and a long one every fifth round, so a range of
+	 * test starts and ends inside and across the pieces, chunks, leaves and
+	 * segments any implementation stores them in.
+	 *
+	 * @param test
+	 *            is the strand appended to
+	 * @return the bases of test after the appends
+	 */
+	private static String appendPieces(IDnaStrand test) {
+		for (int round = 1; round <= 20; round++) {
+			for (String s : strs) {
+				test.append(s);
+			}
+			if (round % 5 == 0) {
+				test.append("acgt".repeat(40));
+			}
+		}
+		return test.toString();
 	}
 
 	/**
@@ -178,6 +222,78 @@ public class TestStrand {
 		}
 	}
 
+	/**
+	 * This test checks that a strand and its reverse are independent: appending
+	 * to either one must not change the other
+	 */
+	@Test
+	public void testReverseIndependent() {
+		String a = "actgcaggttaag";
+		for (String s : strs) {
+			IDnaStrand str = getNewStrand(s);
+			IDnaStrand rev = str.reverse();
+			str.append(a);
+			String rs = new StringBuilder(s).reverse().toString();
+			assertEquals(rs, rev.toString(), "This test checks that appending to a strand does not "
+					+ "change its reverse. Your code changed the reverse of " + s + " after appending " + a);
+			rev.append(a);
+			assertEquals(rs + a, rev.toString(), "This test checks that a reversed strand can be "
+					+ "appended to. Your code did not give the correct toString() after appending " + a
+					+ " to the reverse of " + s);
+			assertEquals(s + a, str.toString(), "This test checks that appending to a reversed strand "
+					+ "does not change the original. Your code changed " + s + a);
+		}
+	}
+
+	/**
+	 * This test checks if reverseComplement works correctly for strands with
+	 * one and two nodes, and that reverse complementing twice gives the original
+	 */
+	@Test
+	public void testReverseComplement() {
+		String a = "actgcaggttaag";
+		for (String s : strs) {
+			final IDnaStrand strand = assertTimeout(Duration.ofMillis(10000),()->{
+				IDnaStrand str = getNewStrand(s);
+				str.append(a);
+				return str.reverseComplement();
+			});
+			StringBuilder rc = new StringBuilder();
+			for (char ch : (s + a).toCharArray()) {
+				rc.append("acgt".charAt("tgca".indexOf(ch)));
+			}
+			rc.reverse();
+			assertEquals(rc.toString(), strand.toString(), "This test checks if reverseComplement works "
+					+ "correctly. Your code did not give the correct toString() for the reverse complement of "
+					+ s + ", " + a);
+			assertEquals(rc.length(), strand.size(), "This test checks if reverseComplement works "
+					+ "correctly. Your code did not give the correct size() for the reverse complement of "
+					+ s + ", " + a);
+			assertEquals(s + a, strand.reverseComplement().toString(), "This test checks that reverse "
+					+ "complementing twice gives the original strand " + s + ", " + a);
+			// a LinkStrand of three nodes: s, a chunk holding a, and a node of its own
+			String b = a.repeat(12);
+			IDnaStrand link = new LinkStrand(s).append(a).append(b).reverseComplement();
+			StringBuilder linkRc = new StringBuilder();
+			for (char ch : (s + a + b).toCharArray()) {
+				linkRc.append("acgt".charAt("tgca".indexOf(ch)));
+			}
+			linkRc.reverse();
+			for (IDnaStrand check : new IDnaStrand[] {strand, link}) {
+				String expected = check == link ? linkRc.toString() : rc.toString();
+				PrimitiveIterator.OfInt it = check.charIterator();
+				for (int k = 0; k < expected.length(); k++) {
+					assertEquals(expected.charAt(k), check.charAt(k), "This test checks charAt(" + k
+							+ ") of the reverse complement of " + s + ", " + a);
+					assertEquals(expected.charAt(k), it.nextInt(), "This test checks the iterator of "
+							+ "the reverse complement of " + s + ", " + a + " at " + k);
+				}
+				assertFalse(it.hasNext(), "This test checks that the iterator of the reverse "
+						+ "complement ends after size() bases");
+			}
+		}
+	}
+
 	@Test
 	public void testReverseMultiSize() {
 		// Two nodes
@@ -262,7 +378,78 @@ public class TestStrand {
 		}
 	}
 
-	
+	/**
+	 * This test checks cutAndSplice against known results, including enzymes
+	 * at the start and end, adjacent enzymes, and enzymes spanning appends
+	 */
+	@Test
+	public void testCutAndSplice() {
+		String[][] cases = {
+				// source, enzyme, splicee, expected
+				{"gaattcaagaattc", "gaattc", "tt", "ttaatt"},
+				{"aagaattcgaattcaa", "gaattc", "c", "aaccaa"},
+				{"aaaaa", "aa", "g", "gga"},
+				{"cgatcgat", "tt", "ccc", "cgatcgat"},
+		};
+		for (String[] c : cases) {
+			final IDnaStrand strand = assertTimeout(Duration.ofMillis(10000),()->{
+				IDnaStrand str = getNewStrand(c[0].substring(0, 3));
+				str.append(c[0].substring(3));
+				return str.cutAndSplice(c[1], c[2]);
+			});
+			assertEquals(c[3], strand.toString(), "This test checks if cutAndSplice works correctly. "
+					+ "Your code did not give the correct toString() after cutting " + c[0] + " at " + c[1]
+					+ " and splicing in " + c[2]);
+			assertEquals(c[3].length(), strand.size(), "This test checks if cutAndSplice works correctly. "
+					+ "Your code did not give the correct size() after cutting " + c[0] + " at " + c[1]
+					+ " and splicing in " + c[2]);
+		}
+	}
+
+	/**
+	 * This test checks that the parallel cut and splice, forced to run in
+	 * parallel with tiny chunks, gives exactly the sequential result
+	 */
+	@Test
+	public void testParallelCutAndSplice() {
+		IDnaStrand str = getNewStrand("gaattcaagaattcgaattc");
+		for (int k = 0; k < 50; k++) {
+			str.append("aagaattccgaatgaattc");
+		}
+		IDnaStrand expected = str.cutAndSplice("gaattc", "tt");
+		IDnaStrand actual = ParallelSplicer.cutAndSplice(str, "gaattc", "tt", 0, 7);
+		assertEquals(expected.toString(), actual.toString(), "The parallel cut and splice did not give "
+				+ "the same toString() as cutAndSplice");
+		assertEquals(expected.getAppendCount(), actual.getAppendCount(), "The parallel cut and splice did "
+				+ "not give the same getAppendCount() as cutAndSplice");
+	}
+
+	/**
+	 * This test checks a digest with several enzymes, including overlapping
+	 * sites, and that a digest with one enzyme matches cutAndSplice
+	 */
+	@Test
+	public void testDigest() {
+		IDnaStrand str = getNewStrand("ccgaattcgg");
+		str.append("ccgaattcgg");
+		Map<String, String> enzymes = new LinkedHashMap<>();
+		enzymes.put("gaattc", "t");
+		enzymes.put("aat", "c");
+		assertEquals("ccgctcggccgctcgg", str.digest(enzymes).toString(), "This test checks if digest "
+				+ "cuts at the site that ends first when sites of different enzymes overlap");
+
+		Map<String, String> tie = new LinkedHashMap<>();
+		tie.put("attc", "c");
+		tie.put("gaattc", "t");
+		assertEquals("cctggcctgg", str.digest(tie).toString(), "This test checks if "
+				+ "digest cuts at the longest site when sites of different enzymes end at the same base");
+
+		Map<String, String> one = new LinkedHashMap<>();
+		one.put("gaattc", "tt");
+		assertEquals(str.cutAndSplice("gaattc", "tt").toString(), str.digest(one).toString(),
+				"This test checks that a digest with a single enzyme is the same as cutAndSplice");
+	}
+
 	/** This test checks if .addToFront() works correctly in cases of multiple calls*/
 	/* TEST DEPRECATED
 	@Test
@@ -327,6 +514,472 @@ public class TestStrand {
 				"through the entire strand. This is typically due to errors with myIndex.");
 	}
 
+	/**
+	 *	Checks that charIterator, chars and forEachChunk produce the same bases as toString
+	 */
+	@Test
+	public void testPrimitiveIteration() {
+		IDnaStrand test = getNewStrand(strs[0]);
+		for (int i = 1; i < strs.length; i++) {
+			test.append(strs[i]);
+		}
+		String all = test.toString();
+
+		StringBuilder fromIterator = new StringBuilder();
+		PrimitiveIterator.OfInt it = test.charIterator();
+		while (it.hasNext()) {
+			fromIterator.append((char) it.nextInt());
+		}
+		assertEquals(all, fromIterator.toString(), "charIterator() did not produce the bases of the strand");
+
+		StringBuilder fromStream = new StringBuilder();
+		test.chars().forEach(ch -> fromStream.append((char) ch));
+		assertEquals(all, fromStream.toString(), "chars() did not produce the bases of the strand");
+
+		StringBuilder fromChunks = new StringBuilder();
+		test.forEachChunk(chunk -> fromChunks.append(chunk));
+		assertEquals(all, fromChunks.toString(), "forEachChunk() did not produce the bases of the strand");
+	}
+
+	/**
+	 * Tests that stats() agrees with size() and getAppendCount(), and that
+	 * the counters stay 0 unless StrandStats.ENABLED.
+	 */
+	@Test
+	public void testStats() {
+		IDnaStrand test = getNewStrand(strs[0]);
+		for (int i = 1; i < strs.length; i++) {
+			test.append(strs[i]);
+		}
+		for (int k = 0; k < test.size(); k++) {
+			test.charAt(k);
+		}
+		test.toString();
+
+		StrandStats stats = test.stats();
+		assertEquals(test.size(), stats.getSize(), "stats() size does not match size()");
+		assertEquals(test.getAppendCount(), stats.getAppends(), "stats() appends do not match getAppendCount()");
+		assertTrue(stats.getFragments() >= 1, "stats() reports no fragments for a non-empty strand");
+		assertTrue(stats.getStorageBytes() >= 0, "stats() reports negative storage");
+		if (!StrandStats.ENABLED) {
+			assertEquals(0, stats.getCursorHits() + stats.getCursorMisses() + stats.getMaterializations(),
+				"stats() counted while StrandStats is disabled");
+		}
+		assertTrue(test.strandInfo().startsWith(test.getClass().getName()),
+			"strandInfo() does not start with the class name");
+	}
+
+	/**
+	 * Tests that charAt(long) and indexOf agree with the String of the
+	 * strand.
+	 */
+	@Test
+	public void testLongIndex() {
+		IDnaStrand test = getNewStrand(strs[0]);
+		for (int i = 1; i < strs.length; i++) {
+			test.append(strs[i]);
+		}
+		String all = test.toString();
+		for (long k = all.length() - 1; k >= 0; k -= 3) {
+			assertEquals(all.charAt((int) k), test.charAt(k), "charAt(" + k + ") gives the wrong base");
+		}
+		for (String pattern : new String[] {"a", "cg", "gat", "tttt"}) {
+			for (int from = 0; from <= all.length(); from += 7) {
+				assertEquals(all.indexOf(pattern, from), test.indexOf(pattern, from),
+					"indexOf(" + pattern + ", " + from + ") is wrong");
+			}
+		}
+		try {
+			test.charAt((long) Integer.MAX_VALUE + 1);
+			fail("charAt past the end of the strand did not throw");
+		}
+		catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests a cutAndSplice result of more than Integer.MAX_VALUE bases,
+	 * with the strands that share the splicee between breaks so the test
+	 * needs little memory. Every base of the result is known from its
+	 * position, so bases are compared with the reference it describes.
+	 */
+	@Test
+	public void testHugeCutAndSplice() {
+		int breaks = 2100;
+		int length = 1 << 20;
+		char[] chars = new char[length];
+		Arrays.fill(chars, 'a');
+		chars[length - 1] = 'c';
+		String splicee = new String(chars);
+		StringBuilder source = new StringBuilder();
+		for (int k = 0; k < breaks; k++) {
+			source.append("t").append("gaattc");
+		}
+		for (IDnaStrand test : new IDnaStrand[] {new LinkStrand(), new RopeStrand()}) {
+			String name = test.getClass().getName();
+			test.initialize(source.toString());
+
+			IDnaStrand recomb = test.cutAndSplice("gaattc", splicee);
+			long segment = 1 + length;
+			assertEquals(breaks * segment, recomb.size(), "size() of huge " + name + " recombinant is wrong");
+			assertTrue(recomb.size() > Integer.MAX_VALUE, name + " recombinant is not larger than 2^31");
+			assertEquals(2 * breaks + 1, recomb.getAppendCount(),
+				"getAppendCount() of huge " + name + " recombinant is wrong");
+			for (long index : new long[] {0, segment - 1, Integer.MAX_VALUE, recomb.size() - segment,
+					recomb.size() - 2, recomb.size() - 1}) {
+				long offset = index % segment;
+				char expected = offset == 0 ? 't' : offset == length ? 'c' : 'a';
+				assertEquals(expected, recomb.charAt(index),
+					"charAt(" + index + ") of huge " + name + " recombinant is wrong");
+			}
+			long from = (long) Integer.MAX_VALUE + 5;
+			long next = (from / segment + 1) * segment - 1;
+			assertEquals(next, recomb.indexOf("ct", from), "indexOf past 2^31 in " + name + " is wrong");
+		}
+	}
+
+	/**
+	 * Tests that an OffHeapStrand keeps its results usable after it is
+	 * closed, cannot be read once closed, and can be initialized again.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		OffHeapStrand test = new OffHeapStrand(strs[0]);
+		StringBuilder expected = new StringBuilder(strs[0]);
+		for (String s : strs) {
+			test.append(s);
+			expected.append(s);
+		}
+		String all = expected.toString();
+		assertEquals(all, test.toString(), "toString() before close is wrong");
+		IDnaStrand rev = test.reverse();
+		IDnaStrand sub = test.subStrand(3, all.length() - 2);
+		IDnaStrand recomb = test.cutAndSplice("ggtc", "gat");
+		test.close();
+		test.close();
+		assertEquals(new StringBuilder(all).reverse().toString(), rev.toString(),
+			"reverse() changed when its strand was closed");
+		assertEquals(all.substring(3, all.length() - 2), sub.toString(),
+			"subStrand() changed when its strand was closed");
+		assertEquals(all.replace("ggtc", "gat"), recomb.toString(),
+			"cutAndSplice() changed when its strand was closed");
+		assertThrows(IllegalStateException.class, () -> test.charAt(0), "charAt on a closed strand");
+		assertThrows(IllegalStateException.class, () -> test.append("a"), "append on a closed strand");
+		assertThrows(IllegalStateException.class, () -> test.toString(), "toString on a closed strand");
+		test.initialize(strs[1]);
+		assertEquals(strs[1], test.toString(), "initialize() after close is wrong");
+		test.close();
+	}
+
+	/**
+	 * Tests that a LinkStrand built from many short appends keeps them in
+	 * a few chunks, still counts every append, and that views taken while
+	 * the last chunk is partly full do not see the appends that fill it.
+	 */
+	@Test
+	public void testCoalescedAppends() {
+		LinkStrand test = new LinkStrand("");
+		StringBuilder expected = new StringBuilder();
+		for (int k = 0; k < 20000; k++) {
+			String piece = k % 100 == 0 ? "acgt".repeat(100) : strs[k % strs.length];
+			test.append(piece);
+			expected.append(piece);
+		}
+		assertEquals(expected.toString(), test.toString(), "toString() after short appends is wrong");
+		assertEquals(20000, test.getAppendCount(), "getAppendCount() does not count every short append");
+		assertTrue(test.stats().getFragments() < 1000, "short appends were not coalesced: "
+			+ test.stats().getFragments() + " nodes");
+		for (int k = expected.length() - 1; k >= 0; k -= 97) {
+			assertEquals(expected.charAt(k), test.charAt(k), "charAt(" + k + ") after short appends is wrong");
+		}
+		PrimitiveIterator.OfInt it = test.charIterator();
+		for (int k = 0; k < expected.length(); k++) {
+			assertEquals(expected.charAt(k), test.charAt(k), "charAt(" + k + ") after short appends is wrong");
+			assertEquals(expected.charAt(k), it.nextInt(), "iterator after short appends is wrong at " + k);
+		}
+		assertFalse(it.hasNext(), "iterator after short appends does not end after size() bases");
+
+		// views of the partly filled last chunk keep their bases as it fills
+		String before = test.toString();
+		IDnaStrand rev = test.reverse();
+		IDnaStrand sub = test.subStrand(before.length() - 50, before.length());
+		IDnaStrand revSub = rev.subStrand(0, 50);
+		for (int k = 0; k < 20; k++) {
+			test.append(strs[k % strs.length]);
+		}
+		String reversed = new StringBuilder(before).reverse().toString();
+		assertEquals(reversed, rev.toString(), "short appends changed a reverse() of the chunk");
+		assertEquals(before.substring(before.length() - 50), sub.toString(),
+			"short appends changed a subStrand() of the chunk");
+		assertEquals(reversed.substring(0, 50), revSub.toString(), "short appends changed a subStrand() of its reverse");
+	}
+
+	/**
+	 * Tests that a cutAndSplice result and its source stay independent
+	 * when either is appended to afterwards, including sites that span
+	 * appended pieces. A LinkStrand is always among the strands, whatever
+	 * getNewStrand makes, and its source ends in a partly filled chunk that
+	 * short appends after the cut go on filling.
+	 */
+	@Test
+	public void testCutAndSpliceIndependent() {
+		IDnaStrand[] strands = {getNewStrand("ttga"), new LinkStrand("ttga")};
+		for (IDnaStrand test : strands) {
+			test.append("attcgg");
+			test.append("aattc".repeat(40));
+			test.append("gaat");
+			test.append("tcaa");
+			String source = test.toString();
+			IDnaStrand recomb = test.cutAndSplice("gaattc", "cc");
+			String expected = source.replace("gaattc", "cc");
+			String name = test.getClass().getName();
+			assertEquals(expected, recomb.toString(), "cutAndSplice across appended pieces is wrong for " + name);
+			test.append("gaattc");
+			test.append("a");
+			recomb.append("tt");
+			assertEquals(source + "gaattca", test.toString(), "appending to the recombinant changed the source for " + name);
+			assertEquals(expected + "tt", recomb.toString(), "appending to the source changed the recombinant for " + name);
+			if (test instanceof LinkStrand) {
+				// the last appends went into the source's chunk the recombinant has slices of
+				assertEquals(4, test.stats().getFragments(), "short appends after the cut did not fill the chunk");
+				// a slice per fragment and piece it spans, a splicee node per break
+				int breaks = (recomb.getAppendCount() - 1) / 2;
+				assertTrue(recomb.stats().getFragments() <= 2 * breaks + 1 + 4 + 1, "recombinant has too many nodes: "
+					+ recomb.stats().getFragments());
+			}
+		}
+	}
+
+	/**
+	 * Tests that several threads reading one strand at once, in order and
+	 * at random, all read the right bases. Each strand is read with its
+	 * reverse, a view whose String one thread builds while the others
+	 * read it. A LinkStrand is always among them, whatever getNewStrand
+	 * makes.
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		IDnaStrand[] strands = {getNewStrand(strs[0]), new LinkStrand(strs[0])};
+		StringBuilder expected = new StringBuilder(strs[0]);
+		for (int k = 0; k < 2000; k++) {
+			String piece = k % 100 == 0 ? "acgt".repeat(50) : strs[k % strs.length];
+			for (IDnaStrand strand : strands) {
+				strand.append(piece);
+			}
+			expected.append(piece);
+		}
+		String all = expected.toString();
+		String reversed = expected.reverse().toString();
+		for (IDnaStrand test : strands) {
+			IDnaStrand rev = test.reverse();
+			int threads = 4;
+			int[] errors = new int[threads];
+			Thread[] readers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				int id = t;
+				readers[t] = new Thread(() -> {
+					Random rand = new Random(id);
+					try {
+						for (int pass = 0; pass < 5; pass++) {
+							if (id == 0 && pass == 2 && !rev.toString().equals(reversed)) {
+								errors[id]++;
+							}
+							for (int k = 0; k < all.length(); k++) {
+								int index = id % 2 == 0 ? k : rand.nextInt(all.length());
+								if (test.charAt(index) != all.charAt(index)) {
+									errors[id]++;
+								}
+								if (rev.charAt(index) != reversed.charAt(index)) {
+									errors[id]++;
+								}
+							}
+							if (test instanceof LinkStrand) {
+								int from = rand.nextInt(all.length() + 1);
+								PrimitiveIterator.OfInt it = ((LinkStrand) test).charIterator(from);
+								for (int k = from; k < all.length(); k++) {
+									if (it.nextInt() != all.charAt(k)) {
+										errors[id]++;
+									}
+								}
+								if (it.hasNext()) {
+									errors[id]++;
+								}
+							}
+						}
+					}
+					catch (RuntimeException e) {
+						errors[id]++;
+					}
+				});
+				readers[t].start();
+			}
+			for (Thread reader : readers) {
+				reader.join();
+			}
+			for (int t = 0; t < threads; t++) {
+				assertEquals(0, errors[t], "thread " + t + " read wrong bases of " + test.getClass().getName());
+			}
+		}
+	}
+
+	/**
+	 * Tests that fragments put into a ConcurrentStrandBuilder by several
+	 * threads are sealed in sequence number order, that seal fails while
+	 * a reserved slot is empty, and that refused reservations are not
+	 * counted.
+	 */
+	@Test
+	public void testConcurrentBuilder() throws Exception {
+		ConcurrentStrandBuilder builder = new ConcurrentStrandBuilder();
+		int threads = 4;
+		int blocks = 40;
+		int blockSize = 25;
+		Thread[] producers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int id = t;
+			producers[t] = new Thread(() -> {
+				for (int b = 0; b < blocks; b++) {
+					if (id % 2 == 0) {
+						long first = builder.reserve(blockSize);
+						for (long seq = first + blockSize - 1; seq >= first; seq--) {
+							builder.put(seq, strs[(int) (seq % strs.length)]);
+						}
+					}
+					else {
+						for (int k = 0; k < blockSize; k++) {
+							long seq = builder.reserve();
+							builder.put(seq, strs[(int) (seq % strs.length)]);
+						}
+					}
+				}
+			});
+			producers[t].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		assertThrows(IllegalStateException.class, () -> builder.reserve(Integer.MAX_VALUE), "reserve past full");
+		assertEquals(threads * blocks * blockSize, builder.reserved(), "a refused reservation was counted");
+		long late = builder.reserve();
+		assertThrows(IllegalStateException.class, () -> builder.seal(), "seal with an empty slot");
+		builder.put(late, "");
+		long later = builder.reserve();
+		assertEquals(late + 1, later, "a failed seal left the builder closed to reservations");
+		builder.put(later, "");
+		assertThrows(IllegalStateException.class, () -> builder.put(late, "a"), "slot filled twice");
+		assertThrows(IndexOutOfBoundsException.class, () -> builder.put(later + 1, "a"), "slot not reserved");
+
+		int count = threads * blocks * blockSize;
+		StringBuilder expected = new StringBuilder();
+		for (int seq = 0; seq < count; seq++) {
+			expected.append(strs[seq % strs.length]);
+		}
+		LinkStrand test = builder.seal();
+		assertEquals(expected.toString(), test.toString(), "sealed bases in sequence order");
+		assertEquals(expected.length(), test.size(), "sealed size");
+		assertEquals(count + 2, test.getAppendCount(), "one append per fragment");
+		assertEquals(count + 2, builder.reserved(), "reserved() after seal");
+		assertThrows(IllegalStateException.class, () -> builder.append("a"), "append after seal");
+		assertEquals(count + 2, builder.reserved(), "a refused reservation was counted");
+		assertThrows(IllegalStateException.class, () -> builder.put(late, "a"), "put after seal");
+		assertThrows(IllegalStateException.class, () -> builder.seal(), "sealed twice");
+	}
+
+	/**
+	 * Tests that getChars, getBytes, forEachChunk and both writeTo methods
+	 * give the same bases as toString, for ranges that start and end inside
+	 * and between appended pieces, for every implementation.
+	 */
+	@Test
+	public void testBulkExport() throws Exception {
+		for (IDnaStrand test : getAllStrands(strs[0])) {
+			String all = appendPieces(test);
+			String name = test.getClass().getName();
+			for (int start = 0; start <= all.length(); start += 13) {
+				for (int end = start; end <= all.length(); end += 17) {
+					char[] chars = new char[end - start + 2];
+					test.getChars(start, end, chars, 1);
+					assertEquals(all.substring(start, end), new String(chars, 1, end - start),
+						"getChars(" + start + ", " + end + ") is wrong for " + name);
+					byte[] bytes = new byte[end - start];
+					test.getBytes(start, end, bytes, 0);
+					assertEquals(all.substring(start, end), new String(bytes, StandardCharsets.ISO_8859_1),
+						"getBytes(" + start + ", " + end + ") is wrong for " + name);
+					StringBuilder chunks = new StringBuilder();
+					test.forEachChunk(start, end, chunks::append);
+					assertEquals(all.substring(start, end), chunks.toString(),
+						"forEachChunk(" + start + ", " + end + ") is wrong for " + name);
+				}
+			}
+			StringBuilder sb = new StringBuilder();
+			test.writeTo(sb);
+			assertEquals(all, sb.toString(), "writeTo(Appendable) is wrong for " + name);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(all.length(), test.writeTo(Channels.newChannel(out)),
+				"writeTo(channel) returned the wrong count for " + name);
+			assertEquals(all, out.toString(StandardCharsets.ISO_8859_1), "writeTo(channel) is wrong for " + name);
+			try {
+				test.getChars(0, all.length(), new char[all.length() - 1], 0);
+				fail("getChars into an array that is too small did not throw for " + name);
+			}
+			catch (IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Tests subStrand of a strand, of its reverse and of another subStrand,
+	 * and that a subStrand and its strand stay independent, for every
+	 * implementation.
+	 */
+	@Test
+	public void testSubStrand() {
+		for (IDnaStrand test : getAllStrands(strs[0])) {
+			String all = appendPieces(test);
+			String rev = new StringBuilder(all).reverse().toString();
+			String name = test.getClass().getName();
+			IDnaStrand reversed = test.reverse();
+			for (int start = 0; start <= all.length(); start += 11) {
+				for (int end = start; end <= all.length(); end += 19) {
+					// views of the views are taken before toString() caches their bases
+					IDnaStrand sub = test.subStrand(start, end);
+					IDnaStrand revSub = reversed.subStrand(start, end);
+					if (end - start >= 3) {
+						assertEquals(all.substring(start + 1, end - 2), sub.subStrand(1, end - start - 2).toString(),
+							"subStrand of subStrand(" + start + ", " + end + ") is wrong for " + name);
+						assertEquals(rev.substring(start + 2, end - 1), revSub.subStrand(2, end - start - 1).toString(),
+							"subStrand of subStrand(" + start + ", " + end + ") of the reverse is wrong for " + name);
+						assertEquals(all.charAt(end - 2), sub.reverse().charAt(1),
+							"charAt of the reverse of subStrand(" + start + ", " + end + ") is wrong for " + name);
+					}
+					assertEquals(end - start, sub.size(),
+						"subStrand(" + start + ", " + end + ") has the wrong size for " + name);
+					assertEquals(all.substring(start, end), sub.toString(),
+						"subStrand(" + start + ", " + end + ") is wrong for " + name);
+					assertEquals(rev.substring(start, end), revSub.toString(),
+						"subStrand(" + start + ", " + end + ") of the reverse is wrong for " + name);
+				}
+			}
+			IDnaStrand sub = test.subStrand(3, 20);
+			IDnaStrand subOfSub = sub.subStrand(2, 10).reverse();
+			test.append("gattaca");
+			sub.append("cc");
+			assertEquals(all.substring(3, 20) + "cc", sub.toString(), "appending changed a subStrand for " + name);
+			assertEquals(all + "gattaca", test.toString(), "appending to a subStrand changed its strand for " + name);
+			assertEquals(new StringBuilder(all.substring(5, 13)).reverse().toString(), subOfSub.toString(),
+				"reverse of a subStrand of a subStrand is wrong for " + name);
+			try {
+				test.subStrand(5, 4);
+				fail("subStrand with start > end did not throw for " + name);
+			}
+			catch (IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+
 	/**
 	 * Checks if index out of bounds exception error is thrown for charAt(-1) call
 	 * If you fail this type, make sure you're throwing an IndexOutOfBoundsException if
@@ -0,0 +1,145 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of many producer threads appending fragments of
+ * fragmentLength bases to one shared strand, as in parallel assembly.
+ * builderAppend reserves and fills one slot of a ConcurrentStrandBuilder
+ * per fragment, builderBlock reserves BLOCK slots at once and fills them,
+ * and lockedAppend links each fragment into a LinkStrand under a lock,
+ * which is what producers had to do before the builder. Like seal(), it
+ * links fragments as nodes of their own, so neither side copies bases,
+ * however short the fragments. Each iteration starts a new
+ * builder and strand, and seals the builder when it ends.
+ * <P>
+ * The builder and strand hold every fragment appended to them, so the
+ * work per iteration is bounded: each is a single shot in which every
+ * thread appends BATCH fragments, and the time reported is per fragment.
+ * A time-bound iteration would append without limit, until the heap or
+ * the builder is full.
+ * <P>
+ * main runs the benchmarks with 1, 2, 4, 8, 16 and 32 threads and writes
+ * the results as JSON, see StrandBenchmark for how to build it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 20, batchSize = ConcurrentAppendBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = ConcurrentAppendBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentAppendBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+	static final int BATCH = 1 << 16;				// fragments per thread per iteration
+	private static final int BLOCK = 64;			// fragments per builderBlock()
+	private static final int FRAGMENTS = 1024;		// distinct fragments appended
+
+	/**
+	 * The builder and strand every producer appends to.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared {
+		@Param({"100"})
+		public int fragmentLength;
+
+		String[] myFragments;
+		ConcurrentStrandBuilder myBuilder;
+		LinkStrand myStrand;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			String source = StrandBenchmark.source(FRAGMENTS * fragmentLength, Integer.MAX_VALUE, new Random(1234));
+			myFragments = new String[FRAGMENTS];
+			for (int k = 0; k < FRAGMENTS; k++) {
+				myFragments[k] = source.substring(k * fragmentLength, (k + 1) * fragmentLength);
+			}
+		}
+
+		@Setup(Level.Iteration)
+		public void start() {
+			myBuilder = new ConcurrentStrandBuilder();
+			myStrand = new LinkStrand();
+		}
+
+		@TearDown(Level.Iteration)
+		public void seal() {
+			myBuilder.seal();
+		}
+	}
+
+	/**
+	 * The fragment one producer appends next.
+	 */
+	@State(Scope.Thread)
+	public static class Producer {
+		private int myNext;
+
+		String next(Shared shared) {
+			myNext = (myNext + 1) & (FRAGMENTS - 1);
+			return shared.myFragments[myNext];
+		}
+	}
+
+	@Benchmark
+	public long builderAppend(Shared shared, Producer producer) {
+		return shared.myBuilder.append(producer.next(shared));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BLOCK)
+	@Warmup(iterations = 20, batchSize = BATCH / BLOCK)
+	@Measurement(iterations = 20, batchSize = BATCH / BLOCK)
+	public long builderBlock(Shared shared, Producer producer) {
+		long first = shared.myBuilder.reserve(BLOCK);
+		for (int k = 0; k < BLOCK; k++) {
+			shared.myBuilder.put(first + k, producer.next(shared));
+		}
+		return first;
+	}
+
+	@Benchmark
+	public long lockedAppend(Shared shared, Producer producer) {
+		String fragment = producer.next(shared);
+		synchronized (shared) {
+			return shared.myStrand.appendLinked(fragment).size();
+		}
+	}
+
+	/**
+	 * Run every benchmark in this class once per thread count in THREADS.
+	 * @param args optionally the JSON result file prefix, jmh-append if
+	 *        none, the thread count and .json are added
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String prefix = args.length > 0 ? args[0] : "jmh-append";
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(ConcurrentAppendBenchmark.class.getSimpleName())
+					.threads(threads)
+					.resultFormat(ResultFormatType.JSON)
+					.result(prefix + "-" + threads + ".json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of many threads reading one shared strand, as when one
+ * reference genome serves concurrent lookups. Every thread reads the same
+ * strand, built once per trial, with random charAt lookups or a
+ * sequential charAt scan of a window of its own. LinkStrand and RopeStrand
+ * are built from appends of readLength bases, so they are read across
+ * their nodes; the other strands store their bases in one piece however
+ * they are built, so they are initialized with the whole source. Throughput should grow linearly with the threads up to the number
+ * of cores.
+ * <P>
+ * main runs the benchmarks with 1, 2, 4, 8, 16 and 32 threads and writes
+ * the results as JSON, see StrandBenchmark for how to build it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentReadBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+	private static final int SCAN_LENGTH = 4096;	// bases per sequentialScan()
+
+	/**
+	 * The strand every thread reads.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared {
+		@Param({"LinkStrand", "StringStrand", "PackedStrand", "RopeStrand"})
+		public String strandType;
+
+		@Param({"10000000"})
+		public int sourceSize;
+
+		@Param({"100", "10000"})
+		public int readLength;
+
+		IDnaStrand myStrand;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			String source = StrandBenchmark.source(sourceSize, Integer.MAX_VALUE, new Random(1234));
+			myStrand = (IDnaStrand) Class.forName(strandType).getDeclaredConstructor().newInstance();
+			if (!(myStrand instanceof LinkStrand || myStrand instanceof RopeStrand)) {
+				myStrand.initialize(source);
+				return;
+			}
+			myStrand.initialize("");
+			for (int k = 0; k < sourceSize; k += readLength) {
+				myStrand.append(source.substring(k, Math.min(sourceSize, k + readLength)));
+			}
+		}
+	}
+
+	/**
+	 * The indexes one thread reads.
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+		private Random myRandom;
+		private long myScanStart;
+
+		@Setup(Level.Iteration)
+		public void setup(Shared shared) {
+			myRandom = new Random(Thread.currentThread().getId());
+			myScanStart = myRandom.nextInt(shared.sourceSize - SCAN_LENGTH);
+		}
+	}
+
+	@Benchmark
+	public char randomCharAt(Shared shared, Reader reader) {
+		return shared.myStrand.charAt(reader.myRandom.nextInt(shared.sourceSize));
+	}
+
+	@Benchmark
+	public int sequentialScan(Shared shared, Reader reader) {
+		int sum = 0;
+		long end = reader.myScanStart + SCAN_LENGTH;
+		for (long k = reader.myScanStart; k < end; k++) {
+			sum += shared.myStrand.charAt(k);
+		}
+		return sum;
+	}
+
+	/**
+	 * Run every benchmark in this class once per thread count in THREADS.
+	 * @param args optionally the JSON result file prefix, jmh-concurrent if
+	 *        none, the thread count and .json are added
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String prefix = args.length > 0 ? args[0] : "jmh-concurrent";
+		for (int threads : THREADS) {
+			Options options = new OptionsBuilder()
+					.include(ConcurrentReadBenchmark.class.getSimpleName())
+					.threads(threads)
+					.resultFormat(ResultFormatType.JSON)
+					.result(prefix + "-" + threads + ".json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,218 @@
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for every IDnaStrand implementation. Unlike DNABenchmark,
+ * JMH warms up the JIT, forks a fresh JVM per configuration, consumes
+ * every result so no work can be elided, and reports error bounds.
+ * <P>
+ * The sources under jmh/ are a separate source set: compile them against
+ * the strand classes with jmh-core on the classpath and
+ * jmh-generator-annprocess as annotation processor, then run main, which
+ * writes the results as JSON for tracking over time.
+ * <P>
+ * The source is random DNA from a fixed seed, appended CHUNK_SIZE bases
+ * at a time, so every strand is read as appends leave it rather than as
+ * initialize does. cutAndSplice has a Splice state of its own, whose
+ * source has the enzyme written in about every siteInterval bases, so the
+ * number of breaks can be varied independently of the source size, and
+ * the other benchmarks are not run once per splice parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class StrandBenchmark {
+
+	private static final String ENZYME = "gaattc";
+	private static final int CHUNK_SIZE = 1000;		// bases per append in append()
+	private static final int RANDOM_READS = 4096;	// reads per charAtRandom()
+
+	@Param({"StringStrand", "StringBuilderStrand", "LinkStrand", "PackedStrand", "RopeStrand"})
+	public String strandType;
+
+	@Param({"10000", "1000000"})
+	public int sourceSize;
+
+	private IDnaStrand myStrand;
+	private String[] myChunks;
+	private int[] myIndexes;
+
+	/**
+	 * The strand cut and spliced, and the splicee.
+	 */
+	@State(Scope.Thread)
+	public static class Splice {
+		@Param({"10", "10000"})
+		public int spliceeSize;
+
+		@Param({"1000", "100000"})
+		public int siteInterval;
+
+		IDnaStrand myStrand;
+		String mySplicee;
+
+		@Setup(Level.Trial)
+		public void setup(StrandBenchmark bench) {
+			String source = source(bench.sourceSize, siteInterval, new Random(1234));
+			myStrand = appendAll(bench.myStrand.getInstance(""), chunks(source));
+			mySplicee = source(spliceeSize, Integer.MAX_VALUE, new Random(5678));
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		String source = source(sourceSize, Integer.MAX_VALUE, new Random(1234));
+		myChunks = chunks(source);
+		myStrand = (IDnaStrand) Class.forName(strandType).getDeclaredConstructor().newInstance();
+		myStrand.initialize("");
+		appendAll(myStrand, myChunks);
+
+		Random rand = new Random(42);
+		myIndexes = new int[RANDOM_READS];
+		for (int k = 0; k < myIndexes.length; k++) {
+			myIndexes[k] = rand.nextInt(sourceSize);
+		}
+	}
+
+	/**
+	 * @return source cut into pieces of CHUNK_SIZE bases, the last one
+	 * shorter if need be
+	 */
+	private static String[] chunks(String source) {
+		String[] chunks = new String[(source.length() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+		for (int k = 0; k < chunks.length; k++) {
+			chunks[k] = source.substring(k * CHUNK_SIZE, Math.min(source.length(), (k + 1) * CHUNK_SIZE));
+		}
+		return chunks;
+	}
+
+	/**
+	 * @return strand after every chunk has been appended to it in order
+	 */
+	private static IDnaStrand appendAll(IDnaStrand strand, String[] chunks) {
+		for (String chunk : chunks) {
+			strand.append(chunk);
+		}
+		return strand;
+	}
+
+	/**
+	 * @return size random bases with ENZYME written in at a random place
+	 * in every run of interval bases
+	 */
+	static String source(int size, int interval, Random rand) {
+		char[] dna = new char[size];
+		for (int k = 0; k < size; k++) {
+			dna[k] = "acgt".charAt(rand.nextInt(4));
+		}
+		for (long start = 0; start + interval <= size; start += interval) {
+			int at = (int) start + rand.nextInt(interval - ENZYME.length() + 1);
+			ENZYME.getChars(0, ENZYME.length(), dna, at);
+		}
+		return new String(dna);
+	}
+
+	@Benchmark
+	public IDnaStrand append() {
+		return appendAll(myStrand.getInstance(""), myChunks);
+	}
+
+	@Benchmark
+	public int charAtSequential() {
+		int sum = 0;
+		int size = (int) myStrand.size();
+		for (int k = 0; k < size; k++) {
+			sum += myStrand.charAt(k);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int charAtRandom() {
+		int sum = 0;
+		for (int index : myIndexes) {
+			sum += myStrand.charAt(index);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public IDnaStrand reverse() {
+		return myStrand.reverse();
+	}
+
+	/**
+	 * Reverse and read every base, so lazy and eager reverses are compared
+	 * on the same work.
+	 */
+	@Benchmark
+	public String reverseToString() {
+		return myStrand.reverse().toString();
+	}
+
+	@Benchmark
+	public String toStringBenchmark() {
+		return myStrand.toString();
+	}
+
+	@Benchmark
+	public int iterate() {
+		int sum = 0;
+		for (char ch : myStrand) {
+			sum += ch;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int charIterator() {
+		int sum = 0;
+		PrimitiveIterator.OfInt it = myStrand.charIterator();
+		while (it.hasNext()) {
+			sum += it.nextInt();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public IDnaStrand cutAndSplice(Splice splice) {
+		return splice.myStrand.cutAndSplice(ENZYME, splice.mySplicee);
+	}
+
+	/**
+	 * Run every benchmark in this class.
+	 * @param args optionally the JSON result file, jmh-result.json if none
+	 * @throws RunnerException if JMH fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		String result = args.length > 0 ? args[0] : "jmh-result.json";
+		Options options = new OptionsBuilder()
+				.include(StrandBenchmark.class.getSimpleName())
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(options).run();
+	}
+}